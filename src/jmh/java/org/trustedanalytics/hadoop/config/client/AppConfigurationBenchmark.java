@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Throughput of reading configuration and of lookups done by applications on parsed
+ * configuration, for growing number of bound services (see {@link VcapServicesGenerator}) with
+ * small and large hadoop property maps.
+ *
+ * Lookup by name searches for the last bound instance. Allocation per operation is reported
+ * by gc profiler (gc.alloc.rate.norm).
+ *
+ * Run with:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="AppConfigurationBenchmark -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class AppConfigurationBenchmark {
+
+  @Param({"1", "50", "500"})
+  public int services;
+
+  @Param({"10", "1000"})
+  public int hadoopKeys;
+
+  private String json;
+
+  private String lastName;
+
+  private AppConfiguration configuration;
+
+  private ServiceInstanceConfiguration hdfs;
+
+  private ServiceInstanceConfiguration instrumentedHdfs;
+
+  @Setup
+  public void setUp() throws IOException {
+    json = VcapServicesGenerator.generate(services, hadoopKeys);
+    lastName = VcapServicesGenerator.lastName(services);
+    configuration = Configurations.newInstanceFromJson(json);
+    hdfs = configuration.getServiceConfig(ServiceType.HDFS_TYPE);
+    instrumentedHdfs =
+        Configurations.instrumented(configuration).getServiceConfig(ServiceType.HDFS_TYPE);
+  }
+
+  @Benchmark
+  @OutputTimeUnit(TimeUnit.SECONDS)
+  public AppConfiguration newInstanceFromJson() throws IOException {
+    return Configurations.newInstanceFromJson(json);
+  }
+
+  @Benchmark
+  public ServiceInstanceConfiguration getServiceConfigByName() {
+    return configuration.getServiceConfig(lastName);
+  }
+
+  @Benchmark
+  public ServiceInstanceConfiguration getServiceConfigByType() {
+    return configuration.getServiceConfig(ServiceType.HDFS_TYPE);
+  }
+
+  @Benchmark
+  public List<ServiceInstanceConfiguration> getServiceConfigList() {
+    return configuration.getServiceConfigList(ServiceType.HBASE_TYPE);
+  }
+
+  @Benchmark
+  public Optional<String> getProperty() {
+    return hdfs.getProperty(Property.HDFS_URI);
+  }
+
+  @Benchmark
+  public Optional<String> getPropertyInstrumented() {
+    return instrumentedHdfs.getProperty(Property.HDFS_URI);
+  }
+
+  @Benchmark
+  public Configuration asHadoopConfiguration() {
+    return hdfs.asHadoopConfiguration();
+  }
+
+  @Benchmark
+  public Map<String, String> asMap() {
+    return hdfs.asMap();
+  }
+}
@@ -0,0 +1,97 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures per-request cost of getting hadoop configuration of a service instance: copy of the
+ * cached configuration versus building it again from the instance's properties.
+ *
+ * Per-user benchmarks also set the two keys login manager sets on every request, once on a full
+ * copy of plain configuration and once on a copy sharing properties of the cached one.
+ *
+ * Run with:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="HadoopConfigurationBenchmark -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HadoopConfigurationBenchmark {
+
+  @Param({"50", "500"})
+  public int keys;
+
+  private ServiceInstanceConfiguration hdfs;
+
+  private Map<String, String> properties;
+
+  private Configuration plainTemplate;
+
+  @Setup
+  public void setUp() throws Exception {
+    hdfs = Configurations.newInstanceFromJson(VcapServicesGenerator.generate(1, keys))
+        .getServiceConfig(ServiceType.HDFS_TYPE);
+    properties = hdfs.asMap();
+    plainTemplate = new Configuration(false);
+    properties.forEach(plainTemplate::set);
+  }
+
+  @Benchmark
+  public Configuration cachedCopy() {
+    return hdfs.asHadoopConfiguration();
+  }
+
+  @Benchmark
+  public Configuration rebuild() {
+    Configuration conf = new Configuration(false);
+    properties.forEach(conf::set);
+    return conf;
+  }
+
+  @Benchmark
+  public Configuration perUserPlainCopy() {
+    return loggedIn(new Configuration(plainTemplate));
+  }
+
+  @Benchmark
+  public Configuration perUserLayered() {
+    return loggedIn(hdfs.asHadoopConfiguration());
+  }
+
+  private static Configuration loggedIn(Configuration conf) {
+    conf.set("hadoop.security.kerberos.ticket.cache.path", "/tmp/krb5cc_user");
+    conf.set("hadoop.kerberos.kinit.command", "kinit -c /tmp/krb5cc_user");
+    return conf;
+  }
+}
@@ -0,0 +1,80 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+/**
+ * Builds synthetic VCAP_SERVICES json for benchmarks.
+ *
+ * There is always exactly one instance of hdfs, named {@value #HDFS_NAME}, so it can be looked
+ * up by type. Remaining instances are spread evenly over hbase, yarn, hive, zookeeper and user
+ * provided sections and named {@code <section>-<number>}, the last of them being
+ * {@link #lastName(int)}. Every instance has uri, kerberos credentials and
+ * {@code HADOOP_CONFIG_KEY} map with given number of keys.
+ */
+final class VcapServicesGenerator {
+
+  static final String HDFS_NAME = "hdfs-instance";
+
+  private static final String[] SECTIONS =
+      {"hbase", "yarn", "hive", "zookeeper", "user-provided"};
+
+  private VcapServicesGenerator() {
+  }
+
+  /**
+   * @param services number of bound service instances (at least 1)
+   * @param hadoopKeys number of hadoop properties of every instance
+   * @return VCAP_SERVICES json
+   */
+  static String generate(int services, int hadoopKeys) {
+    StringBuilder json = new StringBuilder("{\"hdfs\":[");
+    appendInstance(json, HDFS_NAME, hadoopKeys);
+    json.append(']');
+    for (int section = 0; section < SECTIONS.length && section < services - 1; section++) {
+      json.append(",\"").append(SECTIONS[section]).append("\":[");
+      for (int i = section + 1; i < services; i += SECTIONS.length) {
+        json.append(i > section + 1 ? "," : "");
+        appendInstance(json, SECTIONS[section] + "-" + i, hadoopKeys);
+      }
+      json.append(']');
+    }
+    return json.append('}').toString();
+  }
+
+  /**
+   * @param services number of bound service instances
+   * @return name of the last generated instance
+   */
+  static String lastName(int services) {
+    return services == 1
+        ? HDFS_NAME
+        : SECTIONS[(services - 2) % SECTIONS.length] + "-" + (services - 1);
+  }
+
+  private static void appendInstance(StringBuilder json, String name, int hadoopKeys) {
+    json.append("{\"name\":\"").append(name).append("\",\"label\":\"").append(name)
+        .append("\",\"tags\":[],\"credentials\":{")
+        .append("\"uri\":\"hdfs://nameservice1/instances/").append(name).append("\",")
+        .append("\"kerberos\":{\"kdc\":\"kdc.node\",\"krealm\":\"REALM\"},")
+        .append("\"HADOOP_CONFIG_KEY\":{");
+    for (int key = 0; key < hadoopKeys; key++) {
+      json.append(key > 0 ? "," : "")
+          .append("\"dfs.benchmark.key.").append(key).append("\":\"value-").append(key)
+          .append('"');
+    }
+    json.append("}}}");
+  }
+}
@@ -0,0 +1,73 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client.helper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.hbase.HBaseConfiguration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures hbase configuration setup done by {@link Hbase#createConnection()} for every
+ * connection: hbase resources loaded and parsed by {@link HBaseConfiguration#create(Configuration)}
+ * versus copy of the parsed ones. Connection itself (which needs a cluster) is not created.
+ *
+ * Run with:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="HbaseConfigurationBenchmark -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HbaseConfigurationBenchmark {
+
+  @Param({"10", "500"})
+  public int keys;
+
+  private Configuration serviceConf;
+
+  @Setup
+  public void setUp() {
+    serviceConf = new Configuration(false);
+    serviceConf.set("hbase.zookeeper.quorum", "zk-0.node,zk-1.node,zk-2.node");
+    for (int key = 0; key < keys; key++) {
+      serviceConf.set("hbase.benchmark.key." + key, "value-" + key);
+    }
+  }
+
+  @Benchmark
+  public String parsedPerConnection() {
+    return HBaseConfiguration.create(serviceConf).get("hbase.zookeeper.quorum");
+  }
+
+  @Benchmark
+  public String cachedDefaults() {
+    return Hbase.createHbaseConfig(serviceConf).get("hbase.zookeeper.quorum");
+  }
+}
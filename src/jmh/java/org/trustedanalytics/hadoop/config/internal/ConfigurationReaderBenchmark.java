@@ -0,0 +1,123 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.internal;
+
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.IOException;
+import java.lang.management.ManagementFactory;
+import java.lang.management.MemoryPoolMXBean;
+import java.lang.management.MemoryType;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading of VCAP_SERVICES with base64 configuration zips into jackson tree with
+ * streaming reader, that skips unknown services and doesn't copy long strings.
+ *
+ * Parse time is measured directly. Memory is reported in two ways: run with {@code -prof gc}
+ * to get bytes allocated per parse (gc.alloc.rate.norm), and heap still used by parsed
+ * documents together with peak heap usage is printed after every iteration.
+ *
+ * Run with:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="ConfigurationReaderBenchmark -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(value = 1, jvmArgs = "-Xmx1g")
+public class ConfigurationReaderBenchmark {
+
+  private static final Set<String> SECTIONS = ImmutableSet.of("hdfs", "hbase", "kerberos");
+
+  private static final int RETAINED_DOCUMENTS = 20;
+
+  @Param({"tree", "streaming"})
+  public String mode;
+
+  @Param({"1048576"})
+  public int zipSize;
+
+  private String json;
+
+  private final List<ConfigNode> retained = new ArrayList<>();
+
+  @Setup
+  public void setUp() {
+    String zip = Strings.repeat("UEsDBBQACAgIAAAAIQA", zipSize / 19 + 1).substring(0, zipSize);
+    StringBuilder vcap = new StringBuilder("{");
+    for (String service : new String[]{"hdfs", "hbase", "yarn", "hive", "mysql", "postgresql"}) {
+      vcap.append(vcap.length() > 1 ? "," : "").append('"').append(service).append("\":[");
+      for (int i = 0; i < 3; i++) {
+        vcap.append(i > 0 ? "," : "")
+            .append("{\"name\":\"").append(service).append(i).append("\",\"credentials\":{")
+            .append("\"uri\":\"").append(service).append("://cluster/").append(i).append("\",")
+            .append("\"HADOOP_CONFIG_KEY\":{\"fs.defaultFS\":\"hdfs://nameservice1\"},")
+            .append("\"HADOOP_CONFIG_ZIP\":{\"encoded_zip\":\"").append(zip).append("\"}}}");
+      }
+      vcap.append(']');
+    }
+    json = vcap.append('}').toString();
+  }
+
+  @Benchmark
+  public ConfigNode read() throws IOException {
+    ConfigNode root = "tree".equals(mode)
+        ? JsonConfigNode.createInstance(new ObjectMapper().readTree(json))
+        : JsonConfigurationReader.getReader(json, SECTIONS).getRootNode();
+    if (retained.size() < RETAINED_DOCUMENTS) {
+      retained.add(root);
+    }
+    return root;
+  }
+
+  @TearDown(Level.Iteration)
+  public void reportHeap() {
+    System.gc();
+    long used = 0;
+    long peak = 0;
+    for (MemoryPoolMXBean pool : ManagementFactory.getMemoryPoolMXBeans()) {
+      if (pool.getType() == MemoryType.HEAP) {
+        used += pool.getUsage().getUsed();
+        peak += pool.getPeakUsage().getUsed();
+        pool.resetPeakUsage();
+      }
+    }
+    System.out.printf("%n  heap used with %d documents retained: %d KB, peak: %d KB%n",
+                      retained.size(), used / 1024, peak / 1024);
+    retained.clear();
+  }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.internal;
+
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+import org.apache.hadoop.conf.Configuration;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trustedanalytics.hadoop.config.client.Configurations;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares reading of VCAP_SERVICES by parsing json with restoring it from binary snapshot of
+ * previous run. Every service carries Hadoop properties and base64 configuration zip.
+ *
+ * {@link #hadoopConfiguration()} also resolves Hadoop key/values of one instance, which snapshot
+ * doesn't hold, so its difference to {@link #read()} is the work left after restoring.
+ *
+ * Run with:
+ * {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args="SnapshotBenchmark -prof gc"}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SnapshotBenchmark {
+
+  private static final Set<String> SECTIONS = ImmutableSet.of("hdfs", "hbase", "kerberos");
+
+  @Param({"parse", "snapshot"})
+  public String mode;
+
+  @Param({"16384", "1048576"})
+  public int zipSize;
+
+  @Param({"500"})
+  public int hadoopKeys;
+
+  private String json;
+
+  private Path directory;
+
+  private Path snapshot;
+
+  @Setup
+  public void setUp() throws IOException {
+    String zip = Strings.repeat("UEsDBBQACAgIAAAAIQA", zipSize / 19 + 1).substring(0, zipSize);
+    StringBuilder vcap = new StringBuilder("{");
+    for (String service : new String[]{"hdfs", "hbase", "yarn", "hive", "mysql", "postgresql"}) {
+      vcap.append(vcap.length() > 1 ? "," : "").append('"').append(service).append("\":[");
+      for (int i = 0; i < 3; i++) {
+        vcap.append(i > 0 ? "," : "")
+            .append("{\"name\":\"").append(service).append(i).append("\",\"credentials\":{")
+            .append("\"uri\":\"").append(service).append("://cluster/").append(i).append("\",")
+            .append("\"HADOOP_CONFIG_KEY\":{");
+        for (int key = 0; key < hadoopKeys; key++) {
+          vcap.append(key > 0 ? "," : "")
+              .append("\"dfs.property.").append(key).append("\":\"value-").append(key).append('"');
+        }
+        vcap.append("},\"HADOOP_CONFIG_ZIP\":{\"encoded_zip\":\"").append(zip).append("\"}}}");
+      }
+      vcap.append(']');
+    }
+    json = vcap.append('}').toString();
+    directory = Files.createTempDirectory("snapshot-benchmark");
+    snapshot = directory.resolve("config.snapshot");
+    JsonConfigurationReader.getReader(json, SECTIONS, snapshot);
+  }
+
+  @TearDown
+  public void tearDown() throws IOException {
+    Files.deleteIfExists(snapshot);
+    Files.deleteIfExists(directory);
+  }
+
+  @Benchmark
+  public ConfigNode read() throws IOException {
+    return "parse".equals(mode)
+        ? JsonConfigurationReader.getReader(json, SECTIONS).getRootNode()
+        : JsonConfigurationReader.getReader(json, SECTIONS, snapshot).getRootNode();
+  }
+
+  @Benchmark
+  public Configuration hadoopConfiguration() throws IOException {
+    return ("parse".equals(mode)
+        ? Configurations.newInstanceFromJson(json)
+        : Configurations.newInstanceFromJson(json, snapshot))
+        .getServiceConfig("hdfs0").asHadoopConfiguration();
+  }
+}
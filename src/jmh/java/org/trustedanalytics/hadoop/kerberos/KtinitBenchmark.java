@@ -0,0 +1,107 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import com.google.common.collect.Maps;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
+import org.trustedanalytics.hadoop.config.client.oauth.TapOauthToken;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.login.LoginException;
+
+/**
+ * Compares credentials cache preparation done by forking ktinit for every login with the pool
+ * of long-lived ktinit workers. Both paths use local stub helpers from test resources.
+ *
+ * Run with: {@code mvn -Pbenchmark test-compile exec:exec -Djmh.args=KtinitBenchmark}
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class KtinitBenchmark {
+
+  private static final String REALM = "CLOUDERA";
+
+  @Param({"exec", "worker"})
+  public String mode;
+
+  private Oauth2KrbLoginModule module;
+
+  private JwtToken token;
+
+  private Path ccacheDir;
+
+  @Setup
+  public void setUp() throws Exception {
+    System.setProperty(HadoopKrbLoginManager.KRB5_REALM, REALM);
+    ccacheDir = Files.createTempDirectory("ktinit-benchmark");
+    System.setProperty(TicketCacheStore.KRB5_CCACHE_DIR, ccacheDir.toString());
+    token = new TapOauthToken(new FromFileTokenRetriver(resource("oauth.token")).get());
+
+    Map<String, String> options = Maps.newHashMap();
+    options.put(Oauth2KrbLoginModule.ConfigOptions.USE_TOKEN.getName(), "true");
+    options.put(Oauth2KrbLoginModule.ConfigOptions.KTINIT_COMMAND.getName(),
+                executable("krb5jwt/bin/ktinit"));
+    if ("worker".equals(mode)) {
+      options.put(Oauth2KrbLoginModule.ConfigOptions.KTINIT_WORKER_COMMAND.getName(),
+                  executable("krb5jwt/bin/ktinit_worker"));
+    }
+    module = new Oauth2KrbLoginModule();
+    module.initialize(null, new Oauth2KrbCallbackHandler(token::getRawToken), null, options);
+  }
+
+  @TearDown
+  public void tearDown() throws Exception {
+    System.clearProperty(HadoopKrbLoginManager.KRB5_REALM);
+    System.clearProperty(TicketCacheStore.KRB5_CCACHE_DIR);
+  }
+
+  @Benchmark
+  public void prepareKrbCCache() throws LoginException {
+    module.prepareKrbCCache(token);
+  }
+
+  private static String resource(String name) {
+    return KtinitBenchmark.class.getClassLoader().getResource(name).getPath();
+  }
+
+  private static String executable(String name) {
+    String path = resource(name);
+    new File(path).setExecutable(true);
+    return path;
+  }
+}
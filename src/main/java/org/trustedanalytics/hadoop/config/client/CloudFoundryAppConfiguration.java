@@ -15,24 +15,96 @@
  */
 package org.trustedanalytics.hadoop.config.client;
 
-import com.google.common.collect.Lists;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
 
 import org.trustedanalytics.hadoop.config.internal.ConfigConstants;
 import org.trustedanalytics.hadoop.config.internal.ConfigNode;
-import org.trustedanalytics.hadoop.config.internal.ConfigPath;
 
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 
+/**
+ * Configuration of services bound to Cloud Foundry application.
+ *
+ * Sections of all {@link ServiceType}s are walked once, when the instance is created. Service
+ * instances are indexed by name and by type, so lookups don't search configuration tree.
+ */
 public final class CloudFoundryAppConfiguration implements AppConfiguration {
 
-  private ConfigNode rootConfigNode;
+  private final Map<String, ServiceInstanceConfiguration> instancesByName;
 
-  private CloudFoundryAppConfiguration() {
-  }
+  private final Map<ServiceType, List<ServiceInstanceConfiguration>> instancesByType;
 
   CloudFoundryAppConfiguration(ConfigNode node) {
-    this.rootConfigNode = node;
+    this(Collections.singletonList(node));
+  }
+
+  /**
+   * Merges configurations of several documents. Instances of the same type are listed in order
+   * of the documents.
+   */
+  CloudFoundryAppConfiguration(List<ConfigNode> nodes) {
+    Map<String, ServiceInstanceConfiguration> byName = new LinkedHashMap<>();
+    Map<ServiceType, List<ServiceInstanceConfiguration>> byType = new EnumMap<>(ServiceType.class);
+    // types are indexed in declaration order, first instance found for given name wins
+    for (ServiceType serviceType : ServiceType.values()) {
+      ImmutableList.Builder<ServiceInstanceConfiguration> instances = ImmutableList.builder();
+      boolean found = false;
+      for (ConfigNode node : nodes) {
+        Optional<ConfigNode> section = node.resolve(serviceType.getConfPath());
+        if (!section.isPresent()) {
+          continue;
+        }
+        found = true;
+        // elements of type section are named by their name field, so the instance listed under
+        // the type is indexed by name too; other named nodes get instances of their own
+        List<String> names = new ArrayList<>();
+        section.get().forEachChild((name, value) -> names.add(name));
+        Map<String, ConfigNode> children = new HashMap<>();
+        Map<ConfigNode, ServiceInstanceConfiguration> created = new IdentityHashMap<>();
+        List<ConfigNode> childNodes = section.get().getChildren();
+        for (int i = 0; i < childNodes.size(); i++) {
+          ConfigNode child = childNodes.get(i);
+          ServiceInstanceConfiguration instance =
+              CloudFoundryServiceInstanceConfiguration.create(child);
+          instances.add(instance);
+          created.put(child, instance);
+          if (names.get(i) != null) {
+            children.putIfAbsent(names.get(i), child);
+          }
+        }
+        section.get().selectAll(ConfigConstants.INSTANCE_NAME_PROP_NAME).forEach(
+            named -> byName.computeIfAbsent(named.name(), name -> {
+              ConfigNode child = children.get(name);
+              return child != null && child.sameContent(named)
+                  ? created.get(child)
+                  : CloudFoundryServiceInstanceConfiguration.create(named);
+            }));
+      }
+      if (found) {
+        byType.put(serviceType, instances.build());
+      }
+    }
+    this.instancesByName = ImmutableMap.copyOf(byName);
+    this.instancesByType = ImmutableMap.copyOf(byType);
+  }
+
+  /**
+   * Configuration of instances indexed elsewhere (see {@link ConfigurationStore}).
+   */
+  CloudFoundryAppConfiguration(
+      Map<String, ServiceInstanceConfiguration> instancesByName,
+      Map<ServiceType, List<ServiceInstanceConfiguration>> instancesByType) {
+    this.instancesByName = ImmutableMap.copyOf(instancesByName);
+    this.instancesByType = ImmutableMap.copyOf(instancesByType);
   }
 
   /**
@@ -40,22 +112,12 @@ public final class CloudFoundryAppConfiguration implements AppConfiguration {
    */
   @Override
   public ServiceInstanceConfiguration getServiceConfig(String serviceInstanceName) {
-    Optional<ServiceInstanceConfiguration> found = Optional.empty();
-    // search configuration of all predefined types
-    for(ServiceType serviceType : ServiceType.values()) {
-      ConfigPath configPath = ConfigPath .createPath().append(serviceType.getConfPath()).add(
-          configNode -> Lists.newArrayList(configNode
-                                               .selectOne(ConfigConstants.INSTANCE_NAME_PROP_NAME,
-                                                          serviceInstanceName)));
-      found =
-          CloudFoundryServiceInstanceConfiguration.getConfiguration(this.rootConfigNode, configPath);
-      if (found.isPresent()) {
-        break;
-      }
+    ServiceInstanceConfiguration found = instancesByName.get(serviceInstanceName);
+    if (found == null) {
+      throw new IllegalStateException("Not found configuration for service instance named "
+                                      + serviceInstanceName + "!");
     }
-    return found.orElseThrow(() ->
-                 new IllegalStateException("Not found configuration for service instance named "
-                                            + serviceInstanceName + "!"));
+    return found;
   }
 
   /**
@@ -64,14 +126,9 @@ public final class CloudFoundryAppConfiguration implements AppConfiguration {
   @Override
   public ServiceInstanceConfiguration getServiceConfig(ServiceType serviceTypeLocation)
       throws IllegalStateException {
-    ConfigPath configPath = ConfigPath.createPath().append(serviceTypeLocation.getConfPath())
-        .add(ConfigNode::getChildren);
-    Optional<ServiceInstanceConfiguration> found =
-        CloudFoundryServiceInstanceConfiguration.getConfiguration(this.rootConfigNode,
-                                                                  configPath);
-    return found.orElseThrow(() -> new IllegalStateException("Not found "
-                                                             + serviceTypeLocation
-                                                             + " service configuration!"));
+    return getServiceConfigIfExists(serviceTypeLocation).orElseThrow(
+        () -> new IllegalStateException("Not found " + serviceTypeLocation
+                                        + " service configuration!"));
   }
 
   /**
@@ -79,12 +136,7 @@ public final class CloudFoundryAppConfiguration implements AppConfiguration {
    */
   @Override
   public List<ServiceInstanceConfiguration> getServiceConfigList(ServiceType serviceTypeLocation) {
-
-    ConfigPath typeSection = ConfigPath.createPath().append(serviceTypeLocation.getConfPath())
-                             .add(ConfigNode::getChildren);
-
-    return CloudFoundryServiceInstanceConfiguration.getListConfiguration(this.rootConfigNode,
-                                                                         typeSection);
+    return instancesByType.getOrDefault(serviceTypeLocation, ImmutableList.of());
   }
 
   /**
@@ -92,8 +144,18 @@ public final class CloudFoundryAppConfiguration implements AppConfiguration {
    */
   @Override
   public Optional<ServiceInstanceConfiguration> getServiceConfigIfExists(ServiceType serviceTypeLocation) {
-    ConfigPath configPath = ConfigPath.createPath().append(serviceTypeLocation.getConfPath())
-        .add(ConfigNode::getChildren);
-    return CloudFoundryServiceInstanceConfiguration.getConfiguration(this.rootConfigNode, configPath);
+    List<ServiceInstanceConfiguration> found = getServiceConfigList(serviceTypeLocation);
+    if (found.size() > 1) {
+      throw new IllegalStateException("Ambiguity. Impossible to determine which configuration "
+                                      + "should be returned!");
+    }
+    return found.stream().findFirst();
+  }
+
+  /**
+   * Returns all named service instances, by their names.
+   */
+  Map<String, ServiceInstanceConfiguration> getInstancesByName() {
+    return instancesByName;
   }
 }
@@ -15,6 +15,8 @@
  */
 package org.trustedanalytics.hadoop.config.client;
 
+import com.google.common.collect.ImmutableMap;
+
 import org.apache.hadoop.conf.Configuration;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -22,17 +24,37 @@ import org.trustedanalytics.hadoop.config.internal.ConfigConstants;
 import org.trustedanalytics.hadoop.config.internal.ConfigNode;
 import org.trustedanalytics.hadoop.config.internal.ConfigPath;
 
-import java.util.ArrayList;
+import java.util.EnumMap;
 import java.util.HashMap;
-import java.util.List;
 import java.util.Map;
 import java.util.Optional;
-import java.util.function.Function;
 
 final class CloudFoundryServiceInstanceConfiguration implements ServiceInstanceConfiguration {
 
+  private static final ConfigPath HADOOP_CONFIG =
+      ConfigPath.createPath().find(ConfigConstants.HADOOP_CONFIG_KEY_VALUE);
+
   private ConfigNode configuration;
 
+  /**
+   * Properties resolved once per instance, property absent from the map couldn't be resolved.
+   * Encoded zip is never stored here, it stays in the document and is resolved when needed.
+   */
+  private volatile Map<Property, Optional<String>> properties;
+
+  private volatile Map<String, String> hadoopProperties;
+
+  /**
+   * Built once and never handed out, callers get copies of it. Copies share its properties and
+   * keep only their own changes (see {@link LayeredConfiguration}).
+   */
+  private volatile Configuration hadoopConfiguration;
+
+  /**
+   * Zip configuration overlaid with {@link #hadoopConfiguration}, never handed out either.
+   */
+  private volatile Configuration hadoopConfigurationWithZip;
+
   private static final Logger LOGGER =
       LoggerFactory.getLogger(CloudFoundryServiceInstanceConfiguration.class);
 
@@ -44,47 +66,8 @@ final class CloudFoundryServiceInstanceConfiguration implements ServiceInstanceC
     this.configuration = conf;
   }
 
-  static List<ServiceInstanceConfiguration> getListConfiguration(ConfigNode root, ConfigPath path) {
-    ConfigNode node = root;
-    List<ServiceInstanceConfiguration> ret = new ArrayList<>();
-    int step = 1;
-    int pathLength = path.getStack().size();
-    //path interpretation logic
-    for (Function<ConfigNode, List<ConfigNode>> action : path.getStack()) {
-      List<ConfigNode> found = action.apply(node);
-      if (found.size() == 1) {
-        //do next step on path
-        node = found.get(0);
-      } else if (found.size() > 1 && step == pathLength) {
-        //on the end of path we expect list
-        found.forEach(config -> ret.add(new CloudFoundryServiceInstanceConfiguration(config)));
-      } else {
-        //fork is illegal in the middle of path
-        throw new IllegalStateException("Incorrect configuration path! Path can't fork!");
-      }
-      step++;
-    }
-    return ret;
-  }
-
-  static Optional<ServiceInstanceConfiguration> getConfiguration(ConfigNode root, ConfigPath path) {
-    ConfigNode node = root;
-    ServiceInstanceConfiguration ret = null;
-    try {
-      //path interpretation logic
-      for (Function<ConfigNode, List<ConfigNode>> action : path.getStack()) {
-        List<ConfigNode> found = action.apply(node);
-        if (found.size() > 1) {
-          throw new IllegalStateException("Ambiguity. Impossible to determine which configuration "
-                                          + "should be returned!");
-        }
-        node = found.get(0);
-      }
-      ret = new CloudFoundryServiceInstanceConfiguration(node);
-    } catch (NullPointerException ignore) {
-      LOGGER.info("Attempting to read not existing configuration! " + ignore.getMessage());
-    }
-    return Optional.ofNullable(ret);
+  static ServiceInstanceConfiguration create(ConfigNode conf) {
+    return new CloudFoundryServiceInstanceConfiguration(conf);
   }
 
   /**
@@ -100,11 +83,20 @@ final class CloudFoundryServiceInstanceConfiguration implements ServiceInstanceC
    */
   @Override
   public Configuration asHadoopConfiguration() {
-    Configuration conf = new Configuration(false);
-    configuration.find(ConfigConstants.HADOOP_CONFIG_KEY_VALUE).getChildren().forEach(
-        param -> conf.set(param.name(), param.value())
-    );
-    return conf;
+    return new Configuration(hadoopConfiguration());
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Configuration asHadoopConfigurationWithZip() {
+    Configuration conf = hadoopConfigurationWithZip;
+    if (conf == null) {
+      conf = LayeredConfiguration.template(zipProperties(), hadoopProperties());
+      hadoopConfigurationWithZip = conf;
+    }
+    return new Configuration(conf);
   }
 
   /**
@@ -112,11 +104,7 @@ final class CloudFoundryServiceInstanceConfiguration implements ServiceInstanceC
    */
   @Override
   public Map<String, String> asMap() {
-    Map<String, String> properties = new HashMap<>();
-    configuration.find(ConfigConstants.HADOOP_CONFIG_KEY_VALUE).getChildren().forEach(
-        param -> properties.put(param.name(), param.value())
-    );
-    return properties;
+    return new HashMap<>(hadoopProperties());
   }
 
   /**
@@ -125,21 +113,85 @@ final class CloudFoundryServiceInstanceConfiguration implements ServiceInstanceC
   @Override
   public Optional<String> getProperty(Property propertyLocation)
       throws IllegalStateException {
-    ConfigNode node = this.configuration;
-    try {
-      for (Function<ConfigNode, List<ConfigNode>> action : propertyLocation.getConfPath()
-          .getStack()) {
-        List<ConfigNode> found = action.apply(node);
-        if (found.size() > 1) {
-          throw new IllegalStateException("Incorrect property path! Path can't fork!");
+    Optional<String> value = properties().get(propertyLocation);
+    return value != null ? value : resolve(propertyLocation);
+  }
+
+  /**
+   * Checks if other instance was created from the same configuration.
+   *
+   * @param other instance to compare with
+   * @return true if configuration of both instances is equal
+   */
+  boolean sameContent(ServiceInstanceConfiguration other) {
+    return other instanceof CloudFoundryServiceInstanceConfiguration
+           && configuration.sameContent(((CloudFoundryServiceInstanceConfiguration) other)
+                                            .configuration);
+  }
+
+  /**
+   * @return name of the instance, empty for unnamed instance
+   */
+  Optional<String> findName() {
+    return configuration.hasName() ? Optional.of(configuration.name()) : Optional.empty();
+  }
+
+  /**
+   * @return hadoop properties, empty for instance without hadoop configuration
+   */
+  Optional<Map<String, String>> findHadoopProperties() {
+    return configuration.resolve(HADOOP_CONFIG).isPresent()
+        ? Optional.of(hadoopProperties())
+        : Optional.empty();
+  }
+
+  private Map<Property, Optional<String>> properties() {
+    Map<Property, Optional<String>> resolved = properties;
+    if (resolved == null) {
+      resolved = new EnumMap<>(Property.class);
+      for (Property property : Property.values()) {
+        if (property == Property.HADOOP_ZIP) {
+          continue;
+        }
+        try {
+          resolved.put(property, resolve(property));
+        } catch (IllegalStateException e) {
+          LOGGER.debug("Property " + property + " can't be resolved", e);
         }
-        node = found.get(0);
       }
-    } catch (NullPointerException ignore) {
-      LOGGER.debug("Not existing property!", ignore);
-      return Optional.empty();
+      properties = resolved;
     }
-    return Optional.ofNullable(node.value());
+    return resolved;
+  }
+
+  private Optional<String> resolve(Property propertyLocation) {
+    return configuration.resolve(propertyLocation.getConfPath()).map(ConfigNode::value);
   }
 
+  private Map<String, String> hadoopProperties() {
+    Map<String, String> properties = hadoopProperties;
+    if (properties == null) {
+      ImmutableMap.Builder<String, String> builder = ImmutableMap.builder();
+      // child nodes aren't needed afterwards, so they are not created (and cached) at all
+      configuration.find(ConfigConstants.HADOOP_CONFIG_KEY_VALUE).forEachChild(builder::put);
+      properties = builder.build();
+      hadoopProperties = properties;
+    }
+    return properties;
+  }
+
+  private Map<String, String> zipProperties() {
+    return resolve(Property.HADOOP_ZIP)
+        .map(HadoopZipConfiguration::properties)
+        .orElse(ImmutableMap.of());
+  }
+
+  private Configuration hadoopConfiguration() {
+    Configuration conf = hadoopConfiguration;
+    if (conf == null) {
+      conf = LayeredConfiguration.template(hadoopProperties());
+      hadoopConfiguration = conf;
+    }
+    return conf;
+  }
 }
@@ -0,0 +1,63 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Lookups done on instrumented app configurations (see
+ * {@link Configurations#instrumented(AppConfiguration)}), published in JMX as
+ * {@code org.trustedanalytics.hadoop:type=ConfigurationAccess}.
+ *
+ * Calls are counted per method exactly. Only a sample of calls (1 of {@link #getSampleRate()})
+ * is recorded per method, instance and property (or service type) together with its resolution
+ * time, counts of those are estimated from the sample.
+ */
+public interface ConfigurationAccessMXBean {
+
+  /**
+   * @return one of how many lookups is sampled
+   */
+  int getSampleRate();
+
+  /**
+   * @return number of calls by method
+   */
+  Map<String, Long> getLookupsByMethod();
+
+  /**
+   * @return estimated number of calls by method, instance and property (or service type)
+   */
+  Map<String, Long> getEstimatedLookups();
+
+  /**
+   * @return mean resolution time in nanoseconds by method, instance and property (or service
+   *         type)
+   */
+  Map<String, Long> getMeanNanos();
+
+  /**
+   * @param limit maximal number of returned lookups
+   * @return most frequent lookups with estimated number of calls and mean resolution time
+   */
+  List<String> hottest(int limit);
+
+  /**
+   * Forgets all recorded lookups.
+   */
+  void reset();
+}
@@ -0,0 +1,205 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableMap;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.management.ManagementFactory;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+import javax.management.JMException;
+import javax.management.ObjectName;
+
+/**
+ * Counters of lookups done on instrumented app configurations, shared by the whole process.
+ */
+final class ConfigurationAccessMetrics implements ConfigurationAccessMXBean {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationAccessMetrics.class);
+
+  static final String OBJECT_NAME = "org.trustedanalytics.hadoop:type=ConfigurationAccess";
+
+  private static final int DEFAULT_SAMPLE_RATE = 100;
+
+  private static volatile ConfigurationAccessMetrics instance;
+
+  private final int sampleRate;
+
+  private final Map<Lookup, LongAdder> lookups = new EnumMap<>(Lookup.class);
+
+  private final Map<String, Sample> samples = new ConcurrentHashMap<>();
+
+  @VisibleForTesting
+  ConfigurationAccessMetrics(int sampleRate) {
+    Preconditions.checkArgument(sampleRate > 0, "Sample rate has to be positive");
+    this.sampleRate = sampleRate;
+    for (Lookup lookup : Lookup.values()) {
+      lookups.put(lookup, new LongAdder());
+    }
+  }
+
+  /**
+   * Returns metrics with sample rate taken from {@link Configurations#CONFIG_METRICS_SAMPLE}
+   * system property, registered in platform MBean server on first call.
+   */
+  static ConfigurationAccessMetrics getInstance() {
+    if (instance == null) {
+      synchronized (ConfigurationAccessMetrics.class) {
+        if (instance == null) {
+          ConfigurationAccessMetrics metrics = new ConfigurationAccessMetrics(
+              Integer.getInteger(Configurations.CONFIG_METRICS_SAMPLE, DEFAULT_SAMPLE_RATE));
+          try {
+            ManagementFactory.getPlatformMBeanServer()
+                .registerMBean(metrics, new ObjectName(OBJECT_NAME));
+          } catch (JMException e) {
+            LOGGER.warn("Can't register " + OBJECT_NAME + ", lookups won't be visible in JMX", e);
+          }
+          instance = metrics;
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Counts lookup and starts measuring its resolution time, when it is sampled.
+   *
+   * @param lookup called method
+   * @return start time to pass to {@link #stop}, negative when lookup is not sampled
+   */
+  long start(Lookup lookup) {
+    lookups.get(lookup).increment();
+    return sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0
+        ? System.nanoTime() : -1;
+  }
+
+  /**
+   * Records lookup, if it was sampled.
+   *
+   * @param start value returned by {@link #start}
+   * @param lookup called method
+   * @param instance name of service instance, null for lookups of app configuration
+   * @param target looked up property or service type, null when method has no argument
+   */
+  void stop(long start, Lookup lookup, String instance, Object target) {
+    if (start < 0) {
+      return;
+    }
+    long nanos = System.nanoTime() - start;
+    StringBuilder key = new StringBuilder(lookup.toString());
+    if (instance != null) {
+      key.append(' ').append(instance);
+    }
+    if (target != null) {
+      key.append(' ').append(target);
+    }
+    Sample sample = samples.computeIfAbsent(key.toString(), k -> new Sample());
+    sample.count.increment();
+    sample.nanos.add(nanos);
+  }
+
+  @Override
+  public int getSampleRate() {
+    return sampleRate;
+  }
+
+  @Override
+  public Map<String, Long> getLookupsByMethod() {
+    ImmutableMap.Builder<String, Long> snapshot = ImmutableMap.builder();
+    lookups.forEach((lookup, count) -> snapshot.put(lookup.toString(), count.sum()));
+    return snapshot.build();
+  }
+
+  @Override
+  public Map<String, Long> getEstimatedLookups() {
+    ImmutableMap.Builder<String, Long> snapshot = ImmutableMap.builder();
+    samples.forEach((key, sample) -> snapshot.put(key, sample.count.sum() * sampleRate));
+    return snapshot.build();
+  }
+
+  @Override
+  public Map<String, Long> getMeanNanos() {
+    ImmutableMap.Builder<String, Long> snapshot = ImmutableMap.builder();
+    samples.forEach((key, sample) -> snapshot.put(key, sample.meanNanos()));
+    return snapshot.build();
+  }
+
+  @Override
+  public List<String> hottest(int limit) {
+    return samples.entrySet().stream()
+        .sorted(Comparator.comparingLong(
+            (Map.Entry<String, Sample> entry) -> entry.getValue().count.sum()).reversed())
+        .limit(limit)
+        .map(entry -> entry.getKey() + ": ~" + entry.getValue().count.sum() * sampleRate
+                      + " calls, " + entry.getValue().meanNanos() + " ns")
+        .collect(Collectors.toList());
+  }
+
+  @Override
+  public void reset() {
+    lookups.values().forEach(LongAdder::reset);
+    samples.clear();
+  }
+
+  /**
+   * Instrumented methods of {@link AppConfiguration} and {@link ServiceInstanceConfiguration}.
+   */
+  enum Lookup {
+    SERVICE_BY_NAME("getServiceConfig(String)"),
+    SERVICE_BY_TYPE("getServiceConfig(ServiceType)"),
+    SERVICE_LIST("getServiceConfigList"),
+    SERVICE_IF_EXISTS("getServiceConfigIfExists"),
+    PROPERTY("getProperty"),
+    MAP("asMap"),
+    HADOOP_CONFIGURATION("asHadoopConfiguration"),
+    HADOOP_CONFIGURATION_WITH_ZIP("asHadoopConfigurationWithZip");
+
+    private final String method;
+
+    Lookup(String method) {
+      this.method = method;
+    }
+
+    @Override
+    public String toString() {
+      return method;
+    }
+  }
+
+  private static final class Sample {
+
+    private final LongAdder count = new LongAdder();
+
+    private final LongAdder nanos = new LongAdder();
+
+    private long meanNanos() {
+      long sampled = count.sum();
+      return sampled == 0 ? 0 : nanos.sum() / sampled;
+    }
+  }
+}
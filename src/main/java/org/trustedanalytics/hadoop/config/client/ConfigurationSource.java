@@ -0,0 +1,136 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import org.trustedanalytics.hadoop.config.internal.ConfigConstants;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Collections;
+import java.util.List;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Source of app configuration. Source consists of json documents of the same format as
+ * {@link ConfigConstants#VCAP_SERVICES} variable, each of them holding configuration of some of
+ * bound services.
+ *
+ * Documents of all sources given to {@link Configurations#newInstance(ConfigurationSource...)}
+ * are read and parsed in parallel and merged into one configuration.
+ */
+@FunctionalInterface
+public interface ConfigurationSource {
+
+  /**
+   * Lists documents of the source, documents are not read yet.
+   *
+   * @return documents of the source
+   * @throws IOException when documents can't be listed
+   */
+  List<Document> documents() throws IOException;
+
+  /**
+   * Returns source of {@link ConfigConstants#VCAP_SERVICES} environment variable. Source has no
+   * documents, when variable is not set.
+   *
+   * @return environment source
+   */
+  static ConfigurationSource env() {
+    return () -> {
+      String conf = System.getenv(ConfigConstants.VCAP_SERVICES);
+      return conf == null
+          ? Collections.emptyList()
+          : Collections.singletonList(new Document(ConfigConstants.VCAP_SERVICES, () -> conf));
+    };
+  }
+
+  /**
+   * Returns source of single json file.
+   *
+   * @param file json file
+   * @return file source
+   */
+  static ConfigurationSource file(Path file) {
+    return () -> Collections.singletonList(Document.of(file));
+  }
+
+  /**
+   * Returns source of all files in directory (i.e. secrets mounted by Kubernetes, one file per
+   * binding). Hidden files and subdirectories are skipped, documents are ordered by file name.
+   *
+   * @param directory directory of json files
+   * @return directory source
+   */
+  static ConfigurationSource directory(Path directory) {
+    return () -> {
+      try (Stream<Path> files = Files.list(directory)) {
+        return files.filter(file -> !file.getFileName().toString().startsWith("."))
+            .filter(Files::isRegularFile)
+            .sorted()
+            .map(Document::of)
+            .collect(Collectors.toList());
+      }
+    };
+  }
+
+  /**
+   * Single json document of configuration source.
+   */
+  final class Document {
+
+    private final String name;
+
+    private final Content content;
+
+    /**
+     * @param name name of the document used in error messages (i.e. file name)
+     * @param content reader of the document
+     */
+    public Document(String name, Content content) {
+      this.name = name;
+      this.content = content;
+    }
+
+    static Document of(Path file) {
+      return new Document(file.toString(),
+                          () -> new String(Files.readAllBytes(file), StandardCharsets.UTF_8));
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String read() throws IOException {
+      return content.read();
+    }
+
+    @Override
+    public String toString() {
+      return name;
+    }
+  }
+
+  /**
+   * Reads content of a document.
+   */
+  @FunctionalInterface
+  interface Content {
+    String read() throws IOException;
+  }
+}
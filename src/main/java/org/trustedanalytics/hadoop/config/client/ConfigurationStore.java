@@ -0,0 +1,267 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+import com.google.common.collect.MapMaker;
+
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.hadoop.config.internal.StringPool;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * App configurations of many tenants (i.e. held by a broker), read from near-identical
+ * {@code VCAP_SERVICES} documents.
+ *
+ * Document of a tenant is parsed once and not kept afterwards. Its service instances are stored
+ * with resolved properties and hadoop properties, and they are shared between tenants: equal
+ * hadoop property maps are stored once (with hadoop configuration templates built from them),
+ * equal instances are the same object. Heap used by the store grows with distinct content of
+ * the documents rather than with the number of tenants.
+ */
+public final class ConfigurationStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ConfigurationStore.class);
+
+  private final Map<String, AppConfiguration> tenants = new ConcurrentHashMap<>();
+
+  private final Interner<StoredInstanceConfiguration> instances = Interners.newWeakInterner();
+
+  private final Interner<Map<String, String>> hadoopProperties = Interners.newWeakInterner();
+
+  /**
+   * Templates by interned hadoop properties they were built from, keys are compared by identity.
+   */
+  private final Map<Map<String, String>, Configuration> templates =
+      new MapMaker().weakKeys().makeMap();
+
+  /**
+   * Parses configuration of tenant and stores it, replacing the previous one.
+   *
+   * @param tenant tenant id
+   * @param conf app config serialized to json
+   * @return configuration of the tenant
+   * @throws IOException when configuration can't be parsed
+   */
+  public AppConfiguration put(String tenant, String conf) throws IOException {
+    Preconditions.checkNotNull(tenant, "Tenant can't be null!");
+    AppConfiguration configuration = store(Configurations.parse(conf));
+    tenants.put(tenant, configuration);
+    return configuration;
+  }
+
+  /**
+   * @param tenant tenant id
+   * @return configuration of the tenant, empty if it was not stored
+   */
+  public Optional<AppConfiguration> get(String tenant) {
+    return Optional.ofNullable(tenants.get(tenant));
+  }
+
+  /**
+   * Forgets configuration of tenant. Content it shared with other tenants stays stored.
+   *
+   * @param tenant tenant id
+   */
+  public void remove(String tenant) {
+    tenants.remove(tenant);
+  }
+
+  /**
+   * @return ids of tenants with stored configuration
+   */
+  public Set<String> getTenants() {
+    return Collections.unmodifiableSet(tenants.keySet());
+  }
+
+  private AppConfiguration store(CloudFoundryAppConfiguration parsed) {
+    Map<ServiceInstanceConfiguration, ServiceInstanceConfiguration> stored =
+        new IdentityHashMap<>();
+    Map<ServiceType, List<ServiceInstanceConfiguration>> byType =
+        new EnumMap<>(ServiceType.class);
+    for (ServiceType type : ServiceType.values()) {
+      ImmutableList.Builder<ServiceInstanceConfiguration> list = ImmutableList.builder();
+      parsed.getServiceConfigList(type)
+          .forEach(instance -> list.add(stored.computeIfAbsent(instance, this::store)));
+      byType.put(type, list.build());
+    }
+    Map<String, ServiceInstanceConfiguration> byName = new LinkedHashMap<>();
+    parsed.getInstancesByName().forEach(
+        (name, instance) -> byName.put(name, stored.computeIfAbsent(instance, this::store)));
+    return new CloudFoundryAppConfiguration(byName, byType);
+  }
+
+  /**
+   * @param parsed instance of parsed configuration, always created by
+   *               {@link CloudFoundryServiceInstanceConfiguration#create}
+   */
+  private ServiceInstanceConfiguration store(ServiceInstanceConfiguration parsed) {
+    CloudFoundryServiceInstanceConfiguration instance =
+        (CloudFoundryServiceInstanceConfiguration) parsed;
+    Map<Property, Optional<String>> properties = new EnumMap<>(Property.class);
+    for (Property property : Property.values()) {
+      try {
+        properties.put(property, parsed.getProperty(property).map(StringPool::intern));
+      } catch (IllegalStateException e) {
+        LOGGER.debug("Property " + property + " can't be resolved", e);
+      }
+    }
+    return instances.intern(new StoredInstanceConfiguration(
+        instance.findName().map(StringPool::intern).orElse(null),
+        properties,
+        instance.findHadoopProperties()
+            .map(hadoop -> hadoopProperties.intern(ImmutableMap.copyOf(hadoop)))
+            .orElse(null)));
+  }
+
+  private Configuration template(Map<String, String> properties) {
+    return templates.computeIfAbsent(properties, LayeredConfiguration::template);
+  }
+
+  /**
+   * Service instance resolved from parsed configuration. Instances are equal when they have the
+   * same name, properties and hadoop properties.
+   */
+  final class StoredInstanceConfiguration implements ServiceInstanceConfiguration {
+
+    private final String name;
+
+    /**
+     * Property absent from the map couldn't be resolved.
+     */
+    private final Map<Property, Optional<String>> properties;
+
+    /**
+     * Null for instances without hadoop configuration.
+     */
+    private final Map<String, String> hadoopProperties;
+
+    private final int hash;
+
+    private volatile Configuration hadoopConfigurationWithZip;
+
+    private StoredInstanceConfiguration(String name, Map<Property, Optional<String>> properties,
+                                        Map<String, String> hadoopProperties) {
+      this.name = name;
+      this.properties = properties;
+      this.hadoopProperties = hadoopProperties;
+      this.hash = Objects.hash(name, properties, hadoopProperties);
+    }
+
+    /**
+     * Throws {@link NullPointerException} for unnamed instance, like parsed configuration does.
+     */
+    @Override
+    public String getName() {
+      return Preconditions.checkNotNull(name);
+    }
+
+    @Override
+    public Configuration asHadoopConfiguration() {
+      return new Configuration(template(hadoopProperties()));
+    }
+
+    @Override
+    public Configuration asHadoopConfigurationWithZip() {
+      Configuration conf = hadoopConfigurationWithZip;
+      if (conf == null) {
+        conf = LayeredConfiguration.template(
+            getProperty(Property.HADOOP_ZIP)
+                .map(HadoopZipConfiguration::properties)
+                .orElse(ImmutableMap.of()),
+            hadoopProperties());
+        hadoopConfigurationWithZip = conf;
+      }
+      return new Configuration(conf);
+    }
+
+    @Override
+    public Map<String, String> asMap() {
+      return new HashMap<>(hadoopProperties());
+    }
+
+    @Override
+    public Optional<String> getProperty(Property propertyLocation)
+        throws IllegalStateException {
+      Optional<String> value = properties.get(propertyLocation);
+      if (value == null) {
+        throw new IllegalStateException("Property " + propertyLocation + " can't be resolved!");
+      }
+      return value;
+    }
+
+    /**
+     * @return name of the instance, empty for unnamed instance
+     */
+    Optional<String> findName() {
+      return Optional.ofNullable(name);
+    }
+
+    /**
+     * @return hadoop properties, empty for instance without hadoop configuration
+     */
+    Optional<Map<String, String>> getHadoopProperties() {
+      return Optional.ofNullable(hadoopProperties);
+    }
+
+    /**
+     * Throws {@link NullPointerException} for instance without hadoop configuration, like parsed
+     * configuration does.
+     */
+    private Map<String, String> hadoopProperties() {
+      return Preconditions.checkNotNull(hadoopProperties,
+                                        "Service instance has no hadoop configuration");
+    }
+
+    @Override
+    public boolean equals(Object o) {
+      if (this == o) {
+        return true;
+      }
+      if (!(o instanceof StoredInstanceConfiguration)) {
+        return false;
+      }
+      StoredInstanceConfiguration that = (StoredInstanceConfiguration) o;
+      return hash == that.hash
+             && Objects.equals(name, that.name)
+             && properties.equals(that.properties)
+             && Objects.equals(hadoopProperties, that.hadoopProperties);
+    }
+
+    @Override
+    public int hashCode() {
+      return hash;
+    }
+  }
+}
@@ -15,27 +15,98 @@
  */
 package org.trustedanalytics.hadoop.config.client;
 
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
 import org.trustedanalytics.hadoop.config.internal.ConfigConstants;
+import org.trustedanalytics.hadoop.config.internal.ConfigNode;
 import org.trustedanalytics.hadoop.config.internal.JsonConfigurationReader;
 
 import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Objects;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
 
 /**
  * App configuration factory.
  */
 public class Configurations {
 
+  /**
+   * System property with path of configuration snapshot used by {@link #newInstanceFromEnv()}.
+   */
+  public static final String CONFIG_SNAPSHOT = "hadoop.utils.config.snapshot";
+
+  /**
+   * System property with sample rate of lookups recorded by
+   * {@link #instrumented(AppConfiguration)} (one of how many lookups is recorded, 100 by
+   * default). When set, configurations read from environment are instrumented.
+   */
+  public static final String CONFIG_METRICS_SAMPLE = "hadoop.utils.config.metrics.sample";
+
+  /**
+   * Only sections of known service types are read, others are skipped while parsing.
+   */
+  private static final Set<String> SECTIONS = Arrays.stream(ServiceType.values())
+      .map(ServiceType::getSectionName)
+      .collect(Collectors.toSet());
+
+  private static final long LOADER_KEEP_ALIVE_SEC = 10;
+
+  /**
+   * Reads and parses documents of configuration sources, threads are started only when needed.
+   */
+  private static final ExecutorService LOADERS = loaders();
+
+  private static volatile Shared shared;
+
   private Configurations() {
   }
 
   /**
    * Creates new instance of app configuration. Configuration parameters
-   * are read from default environment variable {@link ConfigConstants#VCAP_SERVICES}.
+   * are read from default environment variable {@link ConfigConstants#VCAP_SERVICES}. When
+   * {@link #CONFIG_SNAPSHOT} system property is set, binary snapshot of parsed configuration is
+   * used (see {@link #newInstanceFromJson(String, Path)}). When {@link #CONFIG_METRICS_SAMPLE}
+   * system property is set, configuration is instrumented (see
+   * {@link #instrumented(AppConfiguration)}).
    *
    * @return new instance of app config
    */
   public static AppConfiguration newInstanceFromEnv() throws IOException {
-    return newInstanceFromJson(System.getenv(ConfigConstants.VCAP_SERVICES));
+    return newInstanceFromEnv(System.getenv(ConfigConstants.VCAP_SERVICES));
+  }
+
+  /**
+   * Returns app configuration read from default environment variable
+   * {@link ConfigConstants#VCAP_SERVICES}, shared by the whole process. Variable is parsed only
+   * on first call and when its value differs from the one shared configuration was read from.
+   * Configuration can be dropped with {@link #refreshSharedInstance()}.
+   *
+   * @return shared instance of app config
+   */
+  public static AppConfiguration sharedInstanceFromEnv() throws IOException {
+    return sharedInstance(System.getenv(ConfigConstants.VCAP_SERVICES));
+  }
+
+  /**
+   * Drops app configuration shared by the process, next call of {@link #sharedInstanceFromEnv()}
+   * reads environment again. Configurations obtained before stay unchanged.
+   */
+  public static void refreshSharedInstance() {
+    shared = null;
   }
 
   /**
@@ -46,6 +117,149 @@ public class Configurations {
    * @return new instance of application config
    */
   public static AppConfiguration newInstanceFromJson(String conf) throws IOException {
-    return new CloudFoundryAppConfiguration(JsonConfigurationReader.getReader(conf).getRootNode());
+    return parse(conf);
+  }
+
+  /**
+   * Creates new instance of app configuration. Configuration is restored from binary snapshot
+   * file, when snapshot was created from the same json. Otherwise json is parsed and snapshot is
+   * written, so next start of application (with unchanged configuration) doesn't have to parse
+   * it again.
+   *
+   * @param conf app config serialized to json
+   * @param snapshot snapshot file
+   * @return new instance of application config
+   */
+  public static AppConfiguration newInstanceFromJson(String conf, Path snapshot)
+      throws IOException {
+    return new CloudFoundryAppConfiguration(
+        JsonConfigurationReader.getReader(conf, SECTIONS, snapshot).getRootNode());
+  }
+
+  /**
+   * Creates new instance of app configuration merged from all documents of given sources.
+   * Documents are read and parsed in parallel. Instances of the same service type are listed in
+   * order of sources and their documents, when more instances have the same name, the first one
+   * is returned by {@link AppConfiguration#getServiceConfig(String)}.
+   *
+   * @param sources configuration sources
+   * @return new instance of application config
+   * @throws IOException when any of documents can't be read or parsed
+   */
+  public static AppConfiguration newInstance(ConfigurationSource... sources) throws IOException {
+    List<ConfigurationSource.Document> documents = new ArrayList<>();
+    for (ConfigurationSource source : sources) {
+      documents.addAll(source.documents());
+    }
+    if (documents.size() == 1) {
+      return new CloudFoundryAppConfiguration(read(documents.get(0)));
+    }
+    List<CompletableFuture<ConfigNode>> parsed = new ArrayList<>();
+    for (ConfigurationSource.Document document : documents) {
+      parsed.add(CompletableFuture.supplyAsync(() -> {
+        try {
+          return read(document);
+        } catch (IOException e) {
+          throw new UncheckedIOException(e);
+        }
+      }, LOADERS));
+    }
+    List<ConfigNode> roots = new ArrayList<>();
+    for (CompletableFuture<ConfigNode> root : parsed) {
+      try {
+        roots.add(root.get());
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        throw new InterruptedIOException("Interrupted while loading configuration");
+      } catch (ExecutionException e) {
+        Throwable cause = e.getCause() instanceof UncheckedIOException
+            ? e.getCause().getCause() : e.getCause();
+        throw cause instanceof IOException ? (IOException) cause : new IOException(cause);
+      }
+    }
+    return new CloudFoundryAppConfiguration(roots);
+  }
+
+  /**
+   * Creates new instance of app configuration, that follows changes of given file. File has to
+   * contain app config serialized to json (i.e. the same as {@link ConfigConstants#VCAP_SERVICES}
+   * variable), it is checked for changes every 10 seconds (interval can be changed with
+   * {@code hadoop.utils.config.reload.interval} system property).
+   *
+   * @param file file with app config serialized to json
+   * @return app config reloaded when file changes
+   */
+  public static ReloadableAppConfiguration newReloadableInstanceFromFile(Path file)
+      throws IOException {
+    return ReloadableAppConfiguration.forFile(file);
+  }
+
+  /**
+   * Returns view of app configuration that counts lookups done on it and on service instances
+   * it returns, and samples their resolution time. Counters are published in JMX (see
+   * {@link ConfigurationAccessMXBean}), they are shared by all instrumented configurations.
+   *
+   * @param configuration app config to instrument
+   * @return instrumented app config
+   */
+  public static AppConfiguration instrumented(AppConfiguration configuration) {
+    return new InstrumentedAppConfiguration(configuration,
+                                            ConfigurationAccessMetrics.getInstance());
+  }
+
+  static AppConfiguration sharedInstance(String conf) throws IOException {
+    Shared current = shared;
+    if (current == null || !Objects.equals(current.conf, conf)) {
+      synchronized (Configurations.class) {
+        current = shared;
+        if (current == null || !Objects.equals(current.conf, conf)) {
+          current = new Shared(conf, newInstanceFromEnv(conf));
+          shared = current;
+        }
+      }
+    }
+    return current.configuration;
+  }
+
+  private static AppConfiguration newInstanceFromEnv(String conf) throws IOException {
+    String snapshot = System.getProperty(CONFIG_SNAPSHOT);
+    AppConfiguration configuration = snapshot == null
+        ? newInstanceFromJson(conf) : newInstanceFromJson(conf, Paths.get(snapshot));
+    return System.getProperty(CONFIG_METRICS_SAMPLE) == null
+        ? configuration : instrumented(configuration);
+  }
+
+  private static ConfigNode read(ConfigurationSource.Document document) throws IOException {
+    try {
+      return JsonConfigurationReader.getReader(document.read(), SECTIONS).getRootNode();
+    } catch (IOException | RuntimeException e) {
+      throw new IOException("Can't read configuration from " + document.getName(), e);
+    }
+  }
+
+  private static ExecutorService loaders() {
+    int threads = Runtime.getRuntime().availableProcessors();
+    ThreadPoolExecutor executor = new ThreadPoolExecutor(
+        threads, threads, LOADER_KEEP_ALIVE_SEC, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+        new ThreadFactoryBuilder().setDaemon(true).setNameFormat("config-loader-%d").build());
+    executor.allowCoreThreadTimeOut(true);
+    return executor;
+  }
+
+  static CloudFoundryAppConfiguration parse(String conf) throws IOException {
+    return new CloudFoundryAppConfiguration(
+        JsonConfigurationReader.getReader(conf, SECTIONS).getRootNode());
+  }
+
+  private static final class Shared {
+
+    private final String conf;
+
+    private final AppConfiguration configuration;
+
+    private Shared(String conf, AppConfiguration configuration) {
+      this.conf = conf;
+      this.configuration = configuration;
+    }
   }
 }
@@ -0,0 +1,166 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.trustedanalytics.hadoop.config.internal.StringPool;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+
+/**
+ * Reads hadoop client configuration shipped as base64 encoded zip ({@link Property#HADOOP_ZIP}).
+ *
+ * Zip is decoded and unpacked while it is read, straight from the encoded string, without
+ * temporary files or intermediate byte arrays. Properties of all {@code *-site.xml} files are
+ * cached by SHA-256 of encoded zip, so the same zip (e.g. shared by service instances or kept
+ * after configuration reload) is parsed only once.
+ */
+final class HadoopZipConfiguration {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(HadoopZipConfiguration.class);
+
+  private static final String SITE_FILE_SUFFIX = "-site.xml";
+
+  private static final int CACHED_ZIPS = 16;
+
+  private static final Cache<String, Map<String, String>> CACHE =
+      CacheBuilder.newBuilder().maximumSize(CACHED_ZIPS).build();
+
+  private HadoopZipConfiguration() {
+  }
+
+  /**
+   * Returns properties of all site files in the zip. When property is set in more files, value
+   * from the file that comes later in the zip wins.
+   *
+   * @param encodedZip base64 encoded zip
+   * @return immutable map of properties
+   * @throws IllegalStateException when zip can't be decoded or one of site files can't be parsed
+   */
+  static Map<String, String> properties(String encodedZip) {
+    try {
+      return CACHE.get(sha256(encodedZip), () -> read(encodedZip));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw new IllegalStateException("Can't read hadoop configuration zip", e.getCause());
+    }
+  }
+
+  private static Map<String, String> read(String encodedZip) throws IOException {
+    Map<String, String> properties = new LinkedHashMap<>();
+    try (ZipInputStream zip = new ZipInputStream(
+        Base64.getMimeDecoder().wrap(new CharSequenceInputStream(encodedZip)))) {
+      for (ZipEntry entry = zip.getNextEntry(); entry != null; entry = zip.getNextEntry()) {
+        if (entry.isDirectory() || !entry.getName().endsWith(SITE_FILE_SUFFIX)) {
+          continue;
+        }
+        LOGGER.debug("Reading hadoop configuration from " + entry.getName());
+        Configuration site = new Configuration(false);
+        site.addResource(new NotClosingInputStream(zip), entry.getName());
+        // resource stream is parsed lazily, it has to be done before moving to the next entry
+        site.size();
+        site.forEach(property -> properties.put(StringPool.intern(property.getKey()),
+                                                StringPool.intern(property.getValue())));
+      }
+    }
+    return ImmutableMap.copyOf(properties);
+  }
+
+  private static String sha256(CharSequence encoded) {
+    try {
+      MessageDigest digest = MessageDigest.getInstance("SHA-256");
+      byte[] chunk = new byte[8192];
+      for (int from = 0; from < encoded.length(); from += chunk.length) {
+        int length = Math.min(chunk.length, encoded.length() - from);
+        for (int i = 0; i < length; i++) {
+          chunk[i] = (byte) encoded.charAt(from + i);
+        }
+        digest.update(chunk, 0, length);
+      }
+      StringBuilder hex = new StringBuilder();
+      for (byte b : digest.digest()) {
+        hex.append(String.format("%02x", b));
+      }
+      return hex.toString();
+    } catch (NoSuchAlgorithmException e) {
+      throw new IllegalStateException("SHA-256 not supported", e);
+    }
+  }
+
+  /**
+   * Bytes of (ASCII only) base64 text.
+   */
+  private static final class CharSequenceInputStream extends InputStream {
+
+    private final CharSequence chars;
+
+    private int position;
+
+    CharSequenceInputStream(CharSequence chars) {
+      this.chars = chars;
+    }
+
+    @Override
+    public int read() {
+      return position < chars.length() ? chars.charAt(position++) & 0xff : -1;
+    }
+
+    @Override
+    public int read(byte[] buffer, int offset, int length) {
+      if (length == 0) {
+        return 0;
+      }
+      if (position >= chars.length()) {
+        return -1;
+      }
+      int read = Math.min(length, chars.length() - position);
+      for (int i = 0; i < read; i++) {
+        buffer[offset + i] = (byte) chars.charAt(position++);
+      }
+      return read;
+    }
+  }
+
+  /**
+   * XML parser closes the stream it has read, which must not close the whole zip.
+   */
+  private static final class NotClosingInputStream extends FilterInputStream {
+
+    NotClosingInputStream(InputStream in) {
+      super(in);
+    }
+
+    @Override
+    public void close() {
+    }
+  }
+}
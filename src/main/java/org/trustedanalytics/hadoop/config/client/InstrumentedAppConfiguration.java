@@ -0,0 +1,171 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import com.google.common.collect.Lists;
+
+import org.apache.hadoop.conf.Configuration;
+import org.trustedanalytics.hadoop.config.client.ConfigurationAccessMetrics.Lookup;
+
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * App configuration that reports lookups done on it, and on service instances it returns, to
+ * {@link ConfigurationAccessMetrics}.
+ */
+final class InstrumentedAppConfiguration implements AppConfiguration {
+
+  private final AppConfiguration delegate;
+
+  private final ConfigurationAccessMetrics metrics;
+
+  InstrumentedAppConfiguration(AppConfiguration delegate, ConfigurationAccessMetrics metrics) {
+    this.delegate = delegate;
+    this.metrics = metrics;
+  }
+
+  @Override
+  public ServiceInstanceConfiguration getServiceConfig(String serviceInstanceName) {
+    long start = metrics.start(Lookup.SERVICE_BY_NAME);
+    try {
+      return instrument(delegate.getServiceConfig(serviceInstanceName));
+    } finally {
+      metrics.stop(start, Lookup.SERVICE_BY_NAME, null, serviceInstanceName);
+    }
+  }
+
+  @Override
+  public ServiceInstanceConfiguration getServiceConfig(ServiceType serviceTypeLocation)
+      throws IllegalStateException {
+    long start = metrics.start(Lookup.SERVICE_BY_TYPE);
+    try {
+      return instrument(delegate.getServiceConfig(serviceTypeLocation));
+    } finally {
+      metrics.stop(start, Lookup.SERVICE_BY_TYPE, null, serviceTypeLocation);
+    }
+  }
+
+  @Override
+  public List<ServiceInstanceConfiguration> getServiceConfigList(ServiceType serviceTypeLocation) {
+    long start = metrics.start(Lookup.SERVICE_LIST);
+    try {
+      return Lists.transform(delegate.getServiceConfigList(serviceTypeLocation),
+                             this::instrument);
+    } finally {
+      metrics.stop(start, Lookup.SERVICE_LIST, null, serviceTypeLocation);
+    }
+  }
+
+  @Override
+  public Optional<ServiceInstanceConfiguration> getServiceConfigIfExists(ServiceType serviceType) {
+    long start = metrics.start(Lookup.SERVICE_IF_EXISTS);
+    try {
+      return delegate.getServiceConfigIfExists(serviceType).map(this::instrument);
+    } finally {
+      metrics.stop(start, Lookup.SERVICE_IF_EXISTS, null, serviceType);
+    }
+  }
+
+  private ServiceInstanceConfiguration instrument(ServiceInstanceConfiguration instance) {
+    return new InstrumentedInstanceConfiguration(instance);
+  }
+
+  /**
+   * Returns name of instance, null for unnamed instances of parsed configuration (their
+   * {@link ServiceInstanceConfiguration#getName()} throws).
+   */
+  private static String nameOf(ServiceInstanceConfiguration instance) {
+    if (instance instanceof CloudFoundryServiceInstanceConfiguration) {
+      return ((CloudFoundryServiceInstanceConfiguration) instance).findName().orElse(null);
+    }
+    if (instance instanceof ConfigurationStore.StoredInstanceConfiguration) {
+      return ((ConfigurationStore.StoredInstanceConfiguration) instance).findName().orElse(null);
+    }
+    return instance.getName();
+  }
+
+  /**
+   * Lookups are measured inline (not through a lambda), so calls that are not sampled don't
+   * allocate anything.
+   */
+  private final class InstrumentedInstanceConfiguration implements ServiceInstanceConfiguration {
+
+    private final ServiceInstanceConfiguration instance;
+
+    /**
+     * Resolved once, so that recording a lookup never fails.
+     */
+    private final String name;
+
+    private InstrumentedInstanceConfiguration(ServiceInstanceConfiguration instance) {
+      this.instance = instance;
+      this.name = nameOf(instance);
+    }
+
+    @Override
+    public String getName() {
+      return instance.getName();
+    }
+
+    @Override
+    public Configuration asHadoopConfiguration() {
+      long start = metrics.start(Lookup.HADOOP_CONFIGURATION);
+      try {
+        return instance.asHadoopConfiguration();
+      } finally {
+        metrics.stop(start, Lookup.HADOOP_CONFIGURATION, name, null);
+      }
+    }
+
+    @Override
+    public Configuration asHadoopConfigurationWithZip() {
+      long start = metrics.start(Lookup.HADOOP_CONFIGURATION_WITH_ZIP);
+      try {
+        return instance.asHadoopConfigurationWithZip();
+      } finally {
+        metrics.stop(start, Lookup.HADOOP_CONFIGURATION_WITH_ZIP, name, null);
+      }
+    }
+
+    @Override
+    public Map<String, String> asMap() {
+      long start = metrics.start(Lookup.MAP);
+      try {
+        return instance.asMap();
+      } finally {
+        metrics.stop(start, Lookup.MAP, name, null);
+      }
+    }
+
+    @Override
+    public Optional<String> getProperty(Property propertyLocation)
+        throws IllegalStateException {
+      long start = metrics.start(Lookup.PROPERTY);
+      try {
+        return instance.getProperty(propertyLocation);
+      } finally {
+        metrics.stop(start, Lookup.PROPERTY, name, propertyLocation);
+      }
+    }
+
+    @Override
+    public String toString() {
+      return instance.toString();
+    }
+  }
+}
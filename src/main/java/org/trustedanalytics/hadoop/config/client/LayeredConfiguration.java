@@ -0,0 +1,359 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.lang.reflect.Field;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Enumeration;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Optional;
+import java.util.Properties;
+import java.util.Set;
+import java.util.function.BiConsumer;
+import java.util.function.BiFunction;
+import java.util.function.Function;
+
+/**
+ * Hadoop configurations, that share read-only properties of a service instance and keep only
+ * their own changes.
+ *
+ * Template returned by {@link #template(Map[])} holds {@link LayeredProperties} over immutable
+ * base. {@link Configuration#Configuration(Configuration)} clones them, so copying the template
+ * doesn't copy the base: every copy starts with empty layer, into which it writes the few keys
+ * it changes (i.e. ticket cache path set by login manager). Values are read through to the base.
+ *
+ * Hadoop keeps the properties in private fields, that are set through reflection. When that is
+ * not possible, template is an ordinary configuration and its copies are full copies.
+ */
+final class LayeredConfiguration {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(LayeredConfiguration.class);
+
+  private static final Optional<Field> PROPERTIES = field("properties");
+
+  private static final Optional<Field> OVERLAY = field("overlay");
+
+  private LayeredConfiguration() {
+  }
+
+  /**
+   * Builds configuration to be copied, it must not be modified itself.
+   *
+   * @param layers hadoop properties, set in given order
+   * @return template of configurations
+   */
+  @SafeVarargs
+  static Configuration template(Map<String, String>... layers) {
+    Configuration conf = new Configuration(false);
+    for (Map<String, String> properties : layers) {
+      properties.forEach(conf::set);
+    }
+    if (!PROPERTIES.isPresent() || !OVERLAY.isPresent()) {
+      return conf;
+    }
+    // iterated configuration contains also keys set on behalf of deprecated ones
+    ImmutableMap.Builder<Object, Object> base = ImmutableMap.builder();
+    conf.forEach(param -> base.put(param.getKey(), param.getValue()));
+    Map<Object, Object> shared = base.build();
+    Configuration template = new Configuration(false);
+    try {
+      PROPERTIES.get().set(template, new LayeredProperties(shared));
+      OVERLAY.get().set(template, new LayeredProperties(shared));
+      return template;
+    } catch (IllegalAccessException | RuntimeException e) {
+      LOGGER.debug("Can't share properties of hadoop configuration", e);
+      return conf;
+    }
+  }
+
+  private static Optional<Field> field(String name) {
+    try {
+      Field field = Configuration.class.getDeclaredField(name);
+      field.setAccessible(true);
+      return field.getType() == Properties.class ? Optional.of(field) : Optional.empty();
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.debug("Can't access " + name + " of hadoop configuration", e);
+      return Optional.empty();
+    }
+  }
+
+  /**
+   * Properties layered over read-only base: own entries shadow the base, keys removed from the
+   * base are remembered. Views ({@link #entrySet()}, {@link #keySet()}, ...) are read-only
+   * snapshots. Clone shares the base and copies only own entries. Compound operations of
+   * {@link Map} (compute, merge, replace, ...) are atomic, like in {@link java.util.Hashtable}.
+   */
+  @VisibleForTesting
+  static final class LayeredProperties extends Properties {
+
+    private static final long serialVersionUID = 1L;
+
+    private final Map<Object, Object> base;
+
+    private HashSet<Object> removed = new HashSet<>();
+
+    LayeredProperties(Map<Object, Object> base) {
+      this.base = base;
+    }
+
+    @Override
+    public synchronized Object get(Object key) {
+      Object value = super.get(key);
+      return value != null || removed.contains(key) ? value : base.get(key);
+    }
+
+    @Override
+    public String getProperty(String key) {
+      Object value = get(key);
+      return value instanceof String ? (String) value : null;
+    }
+
+    @Override
+    public synchronized Object getOrDefault(Object key, Object defaultValue) {
+      Object value = get(key);
+      return value != null ? value : defaultValue;
+    }
+
+    @Override
+    public synchronized boolean containsKey(Object key) {
+      return super.containsKey(key) || !removed.contains(key) && base.containsKey(key);
+    }
+
+    @Override
+    public synchronized boolean contains(Object value) {
+      return merged().containsValue(value);
+    }
+
+    @Override
+    public boolean containsValue(Object value) {
+      return contains(value);
+    }
+
+    @Override
+    public synchronized Object put(Object key, Object value) {
+      Object previous = get(key);
+      super.put(key, value);
+      removed.remove(key);
+      return previous;
+    }
+
+    @Override
+    public synchronized Object remove(Object key) {
+      Object previous = get(key);
+      super.remove(key);
+      if (base.containsKey(key)) {
+        removed.add(key);
+      }
+      return previous;
+    }
+
+    @Override
+    public synchronized void clear() {
+      super.clear();
+      removed.addAll(base.keySet());
+    }
+
+    @Override
+    public synchronized int size() {
+      int shadowed = removed.size();
+      for (Object key : super.keySet()) {
+        if (base.containsKey(key)) {
+          shadowed++;
+        }
+      }
+      return super.size() + base.size() - shadowed;
+    }
+
+    @Override
+    public synchronized boolean isEmpty() {
+      return size() == 0;
+    }
+
+    @Override
+    public synchronized Set<Map.Entry<Object, Object>> entrySet() {
+      return merged().entrySet();
+    }
+
+    @Override
+    public synchronized Set<Object> keySet() {
+      return merged().keySet();
+    }
+
+    @Override
+    public synchronized Collection<Object> values() {
+      return merged().values();
+    }
+
+    @Override
+    public synchronized Enumeration<Object> keys() {
+      return Collections.enumeration(merged().keySet());
+    }
+
+    @Override
+    public synchronized Enumeration<Object> elements() {
+      return Collections.enumeration(merged().values());
+    }
+
+    @Override
+    public synchronized void forEach(BiConsumer<? super Object, ? super Object> action) {
+      merged().forEach(action);
+    }
+
+    @Override
+    public synchronized Object clone() {
+      LayeredProperties copy = (LayeredProperties) super.clone();
+      copy.removed = new HashSet<>(removed);
+      return copy;
+    }
+
+    @Override
+    public synchronized boolean equals(Object other) {
+      return other == this || other instanceof Map && merged().equals(other);
+    }
+
+    @Override
+    public synchronized int hashCode() {
+      return merged().hashCode();
+    }
+
+    @Override
+    public synchronized String toString() {
+      return merged().toString();
+    }
+
+    @Override
+    public synchronized Object putIfAbsent(Object key, Object value) {
+      Objects.requireNonNull(value);
+      Object current = get(key);
+      return current != null ? current : put(key, value);
+    }
+
+    @Override
+    public synchronized boolean remove(Object key, Object value) {
+      Object current = get(key);
+      if (current == null || !current.equals(value)) {
+        return false;
+      }
+      remove(key);
+      return true;
+    }
+
+    @Override
+    public synchronized boolean replace(Object key, Object oldValue, Object newValue) {
+      Objects.requireNonNull(newValue);
+      Object current = get(key);
+      if (current == null || !current.equals(oldValue)) {
+        return false;
+      }
+      put(key, newValue);
+      return true;
+    }
+
+    @Override
+    public synchronized Object replace(Object key, Object value) {
+      Objects.requireNonNull(value);
+      return get(key) != null ? put(key, value) : null;
+    }
+
+    @Override
+    public synchronized void replaceAll(BiFunction<? super Object, ? super Object, ?> function) {
+      Objects.requireNonNull(function);
+      for (Map.Entry<Object, Object> entry : merged().entrySet()) {
+        put(entry.getKey(), function.apply(entry.getKey(), entry.getValue()));
+      }
+    }
+
+    @Override
+    public synchronized Object computeIfAbsent(Object key,
+                                               Function<? super Object, ?> mappingFunction) {
+      Objects.requireNonNull(mappingFunction);
+      Object current = get(key);
+      if (current != null) {
+        return current;
+      }
+      Object value = mappingFunction.apply(key);
+      if (value != null) {
+        put(key, value);
+      }
+      return value;
+    }
+
+    @Override
+    public synchronized Object computeIfPresent(
+        Object key, BiFunction<? super Object, ? super Object, ?> function) {
+      Objects.requireNonNull(function);
+      Object current = get(key);
+      return current != null ? update(key, function.apply(key, current)) : null;
+    }
+
+    @Override
+    public synchronized Object compute(Object key,
+                                       BiFunction<? super Object, ? super Object, ?> function) {
+      Objects.requireNonNull(function);
+      return update(key, function.apply(key, get(key)));
+    }
+
+    @Override
+    public synchronized Object merge(Object key, Object value,
+                                     BiFunction<? super Object, ? super Object, ?> function) {
+      Objects.requireNonNull(value);
+      Objects.requireNonNull(function);
+      Object current = get(key);
+      return update(key, current != null ? function.apply(current, value) : value);
+    }
+
+    /**
+     * Sets computed value, null removes the key.
+     */
+    private Object update(Object key, Object value) {
+      if (value == null) {
+        remove(key);
+      } else {
+        put(key, value);
+      }
+      return value;
+    }
+
+    private Map<Object, Object> merged() {
+      if (super.isEmpty() && removed.isEmpty()) {
+        return base;
+      }
+      Map<Object, Object> merged = new HashMap<>(base);
+      merged.keySet().removeAll(removed);
+      for (Map.Entry<Object, Object> own : super.entrySet()) {
+        merged.put(own.getKey(), own.getValue());
+      }
+      return Collections.unmodifiableMap(merged);
+    }
+
+    private Object writeReplace() {
+      Properties copy = new Properties();
+      copy.putAll(merged());
+      return copy;
+    }
+  }
+}
@@ -19,8 +19,6 @@ import org.trustedanalytics.hadoop.config.internal.ConfigConstants;
 import org.trustedanalytics.hadoop.config.internal.ConfigPath;
 import org.trustedanalytics.hadoop.config.internal.Path;
 
-import com.google.common.collect.Lists;
-
 /**
  * Configuration properties.
  */
@@ -29,125 +27,85 @@ public enum Property implements Path {
   /**
    * Hdfs directory URI used by broker.
    */
-  HDFS_URI(ConfigPath.createPath().add(configNode ->
-                                           Lists.newArrayList(configNode.find(
-                                               ConfigConstants.HDFS_URI)))
-  ),
+  HDFS_URI(ConfigPath.createPath().find(ConfigConstants.HDFS_URI)),
 
   /**
    * Hive directory URI used by broker.
    */
-  HIVE_URL(ConfigPath.createPath().add(configNode ->
-      Lists.newArrayList(configNode.find(
-          ConfigConstants.HIVE_URL)))
-  ),
+  HIVE_URL(ConfigPath.createPath().find(ConfigConstants.HIVE_URL)),
 
 
   /**
    * Kerberos KDC address.
    */
-  KRB_KDC(ConfigPath.createPath().add(configNode ->
-                                            Lists.newArrayList(
-                                                configNode
-                                                    .find(ConfigConstants.KDC_ADRESS_PROP_NAME)))
-  ),
+  KRB_KDC(ConfigPath.createPath().find(ConfigConstants.KDC_ADRESS_PROP_NAME)),
 
   /**
    * Default kerberos realm.
    */
-  KRB_REALM(ConfigPath.createPath().add(configNode ->
-                                            Lists.newArrayList(
-                                                configNode
-                                                    .find(ConfigConstants.REALM_NAME_PROP_NAME)))
-  ),
+  KRB_REALM(ConfigPath.createPath().find(ConfigConstants.REALM_NAME_PROP_NAME)),
 
   /**
    * Base64 from cacert.
    */
-  KRB_CACERT(ConfigPath.createPath().add(configNode ->
-                                            Lists.newArrayList(
-                                                configNode
-                                                    .find(ConfigConstants.KRB_CACERT_PROP_NAME)))
-  ),
+  KRB_CACERT(ConfigPath.createPath().find(ConfigConstants.KRB_CACERT_PROP_NAME)),
 
   /**
    * Detrmine is kerberos enabled.
    */
-  KRB_MODE(ConfigPath.createPath().add(configNode ->
-                                            Lists.newArrayList(
-                                                configNode
-                                                    .find(ConfigConstants.KRB_MODE_PROP_NAME)))
-  ),
+  KRB_MODE(ConfigPath.createPath().find(ConfigConstants.KRB_MODE_PROP_NAME)),
 
   /**
    *  Zookeeper cluster address.
    */
-  ZOOKEPER_URI(ConfigPath.createPath().add(configNode ->
-                                            Lists.newArrayList(
-                                                configNode.find(ConfigConstants.ZOOKEEPER_CLUSTER)))
-  ),
+  ZOOKEPER_URI(ConfigPath.createPath().find(ConfigConstants.ZOOKEEPER_CLUSTER)),
 
   /**
    * Zookeeper node used by broker.
    */
-  ZOOKEPER_ZNODE(ConfigPath.createPath().add(configNode ->
-                                            Lists.newArrayList(
-                                                configNode.find(ConfigConstants.ZOOKEEPER_ZNODE)))
-  ),
+  ZOOKEPER_ZNODE(ConfigPath.createPath().find(ConfigConstants.ZOOKEEPER_ZNODE)),
 
   /**
    * Headless account name, used for authentication in Kerberos.
    */
-  USER(ConfigPath.createPath().add(configNode ->
-                                            Lists.newArrayList(
-                                                configNode
-                                                    .find(ConfigConstants.USER_PROP_NAME)))
-  ),
+  USER(ConfigPath.createPath().find(ConfigConstants.USER_PROP_NAME)),
 
   /**
    * Headless account password, used for authentication in Kerberos.
    */
-  PASSWORD(ConfigPath.createPath().add(configNode ->
-                                           Lists.newArrayList(
-                                               configNode
-                                                   .find(ConfigConstants.PASSWORD_PROP_NAME)))
-
-  ),
+  PASSWORD(ConfigPath.createPath().find(ConfigConstants.PASSWORD_PROP_NAME)),
 
   /**
    * Hbase namespace used by broker.
    */
-  HBASE_NAMESPACE(ConfigPath.createPath().add(configNode ->
-                                                  Lists.newArrayList(
-                                                      configNode.find(ConfigConstants.HBASE_PROP_NAME_NAMESPACE)))
-  ),
+  HBASE_NAMESPACE(ConfigPath.createPath().find(ConfigConstants.HBASE_PROP_NAME_NAMESPACE)),
 
   /**
    * Yarn queue name.
    */
-  YARN_QUEUE(ConfigPath.createPath().add(configNode ->
-                                                  Lists.newArrayList(
-                                                      configNode.find(ConfigConstants.YARN_QUEUE)))
-  ),
+  YARN_QUEUE(ConfigPath.createPath().find(ConfigConstants.YARN_QUEUE)),
 
   /**
    * Base64 from configuration zip.
    */
-  HADOOP_ZIP(ConfigPath.createPath().add(configNode ->
-                                        Lists.newArrayList(
-                                            configNode.find(ConfigConstants.HADOOP_CONFIG_ZIP_VALUE).find(ConfigConstants.ZIP)))
-  );
+  HADOOP_ZIP(ConfigPath.createPath()
+                 .find(ConfigConstants.HADOOP_CONFIG_ZIP_VALUE)
+                 .find(ConfigConstants.ZIP));
 
 
   private final transient ConfigPath configPath;
 
   Property(ConfigPath path) {
-    this.configPath = path;
+    this.configPath = path.unmodifiable();
   }
 
+  /**
+   * Returns unmodifiable path shared by all lookups of the property, so its resolution can be
+   * memoized.
+   */
   @Override
   public ConfigPath getConfPath()  {
-    return ConfigPath.createPath().append(this.configPath);
+    return this.configPath;
   }
 
 }
@@ -0,0 +1,228 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableSet;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.FileTime;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * App configuration read from a file (with the same content as {@link
+ * org.trustedanalytics.hadoop.config.internal.ConfigConstants#VCAP_SERVICES}), that is reloaded
+ * when the file changes.
+ *
+ * File is polled by a background thread, which also parses new content. Parsed configuration is
+ * immutable and replaces the previous one at once, so readers never wait and never see half
+ * applied change. Listeners are told names of service instances, that were added, removed or
+ * changed. When new content can't be parsed, previous configuration stays in use.
+ */
+public final class ReloadableAppConfiguration implements AppConfiguration, Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ReloadableAppConfiguration.class);
+
+  static final String CONFIG_RELOAD_INTERVAL = "hadoop.utils.config.reload.interval";
+
+  private static final long DEFAULT_RELOAD_INTERVAL_SEC = 10;
+
+  private final Path file;
+
+  private final ScheduledExecutorService poller;
+
+  private final List<ChangeListener> listeners = new CopyOnWriteArrayList<>();
+
+  private volatile CloudFoundryAppConfiguration current;
+
+  private FileTime lastModified;
+
+  private long lastSize;
+
+  private String lastContent;
+
+  @VisibleForTesting
+  ReloadableAppConfiguration(Path file, long intervalMs) throws IOException {
+    this.file = Preconditions.checkNotNull(file, "Configuration file can't be null!");
+    reload();
+    if (intervalMs > 0) {
+      poller = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("config-reload-%d").build());
+      poller.scheduleWithFixedDelay(this::reloadQuietly, intervalMs, intervalMs,
+                                    TimeUnit.MILLISECONDS);
+    } else {
+      poller = null;
+    }
+  }
+
+  /**
+   * Creates configuration polled with interval taken from {@link #CONFIG_RELOAD_INTERVAL} system
+   * property (seconds, 10 by default).
+   *
+   * @param file file with configuration serialized to json
+   * @return configuration reloaded when file changes
+   * @throws IOException when file can't be read or parsed
+   */
+  static ReloadableAppConfiguration forFile(Path file) throws IOException {
+    return new ReloadableAppConfiguration(
+        file, TimeUnit.SECONDS.toMillis(Long.getLong(CONFIG_RELOAD_INTERVAL,
+                                                     DEFAULT_RELOAD_INTERVAL_SEC)));
+  }
+
+  /**
+   * Registers listener notified (on reloading thread) after each change of configuration.
+   *
+   * @param listener listener of changes
+   */
+  public void addListener(ChangeListener listener) {
+    listeners.add(Preconditions.checkNotNull(listener, "Listener can't be null!"));
+  }
+
+  public void removeListener(ChangeListener listener) {
+    listeners.remove(listener);
+  }
+
+  /**
+   * Checks the file at once and applies its content if it has changed.
+   *
+   * @return true if configuration has changed
+   * @throws IOException when file can't be read or parsed, previous configuration stays in use
+   */
+  public synchronized boolean reload() throws IOException {
+    BasicFileAttributes attributes = Files.readAttributes(file, BasicFileAttributes.class);
+    if (attributes.lastModifiedTime().equals(lastModified) && attributes.size() == lastSize) {
+      return false;
+    }
+    String content = new String(Files.readAllBytes(file), StandardCharsets.UTF_8);
+    lastModified = attributes.lastModifiedTime();
+    lastSize = attributes.size();
+    if (content.equals(lastContent)) {
+      return false;
+    }
+    CloudFoundryAppConfiguration previous = current;
+    current = Configurations.parse(content);
+    lastContent = content;
+    if (previous == null) {
+      return true;
+    }
+
+    Set<String> changed = changedInstances(previous, current);
+    LOGGER.info("Configuration reloaded from " + file + ", changed service instances: " + changed);
+    for (ChangeListener listener : listeners) {
+      try {
+        listener.onChange(changed);
+      } catch (RuntimeException e) {
+        LOGGER.warn("Configuration change listener failed", e);
+      }
+    }
+    return true;
+  }
+
+  private void reloadQuietly() {
+    try {
+      reload();
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Can't reload configuration from " + file + ", previous one stays in use", e);
+    }
+  }
+
+  private static Set<String> changedInstances(CloudFoundryAppConfiguration previous,
+                                              CloudFoundryAppConfiguration next) {
+    Map<String, ServiceInstanceConfiguration> before = previous.getInstancesByName();
+    Map<String, ServiceInstanceConfiguration> after = next.getInstancesByName();
+    ImmutableSet.Builder<String> changed = ImmutableSet.builder();
+    before.forEach((name, instance) -> {
+      ServiceInstanceConfiguration now = after.get(name);
+      if (now == null || !((CloudFoundryServiceInstanceConfiguration) instance).sameContent(now)) {
+        changed.add(name);
+      }
+    });
+    after.keySet().stream().filter(name -> !before.containsKey(name)).forEach(changed::add);
+    return changed.build();
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ServiceInstanceConfiguration getServiceConfig(String serviceInstanceName) {
+    return current.getServiceConfig(serviceInstanceName);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public ServiceInstanceConfiguration getServiceConfig(ServiceType serviceTypeLocation)
+      throws IllegalStateException {
+    return current.getServiceConfig(serviceTypeLocation);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public List<ServiceInstanceConfiguration> getServiceConfigList(ServiceType serviceTypeLocation) {
+    return current.getServiceConfigList(serviceTypeLocation);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
+  @Override
+  public Optional<ServiceInstanceConfiguration> getServiceConfigIfExists(
+      ServiceType serviceType) {
+    return current.getServiceConfigIfExists(serviceType);
+  }
+
+  /**
+   * Stops polling the file, configuration loaded so far stays available.
+   */
+  @Override
+  public void close() {
+    if (poller != null) {
+      poller.shutdownNow();
+    }
+  }
+
+  @FunctionalInterface
+  public interface ChangeListener {
+
+    /**
+     * Called after new configuration has been swapped in.
+     *
+     * @param changedInstances names of service instances added, removed or changed
+     */
+    void onChange(Set<String> changedInstances);
+  }
+}
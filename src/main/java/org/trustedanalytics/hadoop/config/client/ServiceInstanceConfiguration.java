@@ -41,6 +41,23 @@ public interface ServiceInstanceConfiguration {
    */
   Configuration asHadoopConfiguration();
 
+  /**
+   * Create new instance of {@link Configuration} with client configuration of the whole cluster
+   * shipped in {@link Property#HADOOP_ZIP} (properties of all *-site.xml files in the zip),
+   * overlaid with properties of {@link #asHadoopConfiguration()}. Same as
+   * {@link #asHadoopConfiguration()} if there is no zip in configuration.
+   *
+   * @return hadoop client configuration
+   * @throws IllegalStateException when zip can't be decoded or parsed
+   */
+  default Configuration asHadoopConfigurationWithZip() {
+    Configuration conf = new Configuration(false);
+    getProperty(Property.HADOOP_ZIP).ifPresent(
+        zip -> HadoopZipConfiguration.properties(zip).forEach(conf::set));
+    asHadoopConfiguration().forEach(property -> conf.set(property.getKey(), property.getValue()));
+    return conf;
+  }
+
   /**
    * Returns configuration properties for that service instance.
    *
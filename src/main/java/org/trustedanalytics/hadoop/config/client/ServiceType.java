@@ -15,7 +15,6 @@
  */
 package org.trustedanalytics.hadoop.config.client;
 
-import com.google.common.collect.Lists;
 
 import org.trustedanalytics.hadoop.config.internal.ConfigConstants;
 import org.trustedanalytics.hadoop.config.internal.ConfigPath;
@@ -30,59 +29,57 @@ public enum ServiceType implements Path {
   /**
    * Location of all instances of HBASE type services.
    */
-  HBASE_TYPE(ConfigPath.createPath().add(
-      configNode -> Lists.newArrayList(configNode.get(ConfigConstants.HBASE_SERVICE_TYPE_NAME)))),
+  HBASE_TYPE(ConfigConstants.HBASE_SERVICE_TYPE_NAME),
 
   /**
    * Location of all instances of YARN type services.
    */
-  YARN_TYPE(ConfigPath.createPath().add(
-      configNode -> Lists.newArrayList(configNode.get(ConfigConstants.YARN_SERVICE_TYPE_NAME)))),
+  YARN_TYPE(ConfigConstants.YARN_SERVICE_TYPE_NAME),
 
   /**
    * Location of all instances of HDFS type services.
    */
-  HDFS_TYPE(ConfigPath.createPath().add(
-      configNode -> Lists.newArrayList(configNode.get(ConfigConstants.HDFS_SERVICE_TYPE_NAME)))),
+  HDFS_TYPE(ConfigConstants.HDFS_SERVICE_TYPE_NAME),
 
   /**
    * Location of all instances of HDFS type services.
    */
-  HIVE_TYPE(ConfigPath.createPath().add(
-      configNode -> Lists.newArrayList(configNode.get(ConfigConstants.HIVE_SERVICE_TYPE_NAME)))),
+  HIVE_TYPE(ConfigConstants.HIVE_SERVICE_TYPE_NAME),
 
   /**
    * Location of all instances of ZOOKEEPER type services.
    */
-  ZOOKEEPER_TYPE(ConfigPath.createPath()
-      .add(
-          configNode -> Lists.newArrayList(configNode
-              .get(ConfigConstants.ZOOKEEPER_SERVICE_TYPE_NAME)))),
+  ZOOKEEPER_TYPE(ConfigConstants.ZOOKEEPER_SERVICE_TYPE_NAME),
 
   /**
    * Location of all user provided services configuration.
    */
-  USER_PROVIDED(ConfigPath.createPath().add(
-      configNode -> Lists.newArrayList(configNode.get(ConfigConstants.USER_PROVIDED)))),
+  USER_PROVIDED(ConfigConstants.USER_PROVIDED),
 
   /**
    * Location of all gearpump services configuration.
    */
-  GEAR_PUMP_TYPE(ConfigPath.createPath()
-      .add(
-          configNode -> Lists.newArrayList(configNode
-              .get(ConfigConstants.GEAR_PUMP_SERVICE_TYPE_NAME)))),
+  GEAR_PUMP_TYPE(ConfigConstants.GEAR_PUMP_SERVICE_TYPE_NAME),
 
   /**
    * Location of all kerberos services configuration.
    */
-  KERBEROS_TYPE(ConfigPath.createPath().add(
-      configNode -> Lists.newArrayList(configNode.get(ConfigConstants.KRB_CONF_NODE_NAME))));
+  KERBEROS_TYPE(ConfigConstants.KRB_CONF_NODE_NAME);
 
   private final transient ConfigPath configPath;
 
-  ServiceType(ConfigPath path) {
-    this.configPath = path;
+  private final String sectionName;
+
+  ServiceType(String sectionName) {
+    this.sectionName = sectionName;
+    this.configPath = ConfigPath.createPath().get(sectionName).unmodifiable();
+  }
+
+  /**
+   * Name of the root field of configuration, under which instances of the type are listed.
+   */
+  String getSectionName() {
+    return sectionName;
   }
 
   @Override
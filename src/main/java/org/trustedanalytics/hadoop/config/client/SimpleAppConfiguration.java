@@ -15,42 +15,123 @@
  */
 package org.trustedanalytics.hadoop.config.client;
 
-import java.util.Collections;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+
+import java.util.ArrayList;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
 
+/**
+ * App configuration composed in code (i.e. in tests or benchmarks), without parsing any json.
+ * Behaves like configuration read from {@code VCAP_SERVICES} (lookups are delegated to
+ * {@link CloudFoundryAppConfiguration}): instances are indexed by name and by type, many
+ * instances of the same type can be registered.
+ */
 public class SimpleAppConfiguration implements AppConfiguration {
 
-  private final Map<ServiceType, ServiceInstanceConfiguration> svcConfigurations;
-  
+  private final AppConfiguration instances;
+
+  /**
+   * Creates configuration with at most one instance of every service type.
+   *
+   * @param svcConfigurations service instances by type
+   */
   public SimpleAppConfiguration(Map<ServiceType, ServiceInstanceConfiguration> svcConfigurations) {
-    this.svcConfigurations = svcConfigurations;
+    this(Builder.of(svcConfigurations));
   }
-  
+
+  private SimpleAppConfiguration(Builder builder) {
+    Map<ServiceType, List<ServiceInstanceConfiguration>> byType = new EnumMap<>(ServiceType.class);
+    builder.instancesByType.forEach(
+        (type, instances) -> byType.put(type, ImmutableList.copyOf(instances)));
+    this.instances = new CloudFoundryAppConfiguration(builder.instancesByName, byType);
+  }
+
+  /**
+   * {@inheritDoc}
+   */
   @Override
   public ServiceInstanceConfiguration getServiceConfig(String serviceInstanceName) {
-    return svcConfigurations.values().stream()
-        .filter(c -> c.getName().equals(serviceInstanceName))
-        .findFirst()
-        .get();
+    return instances.getServiceConfig(serviceInstanceName);
   }
 
+  /**
+   * {@inheritDoc}
+   */
   @Override
   public ServiceInstanceConfiguration getServiceConfig(ServiceType serviceTypeLocation)
       throws IllegalStateException {
-    return svcConfigurations.get(serviceTypeLocation);
+    return instances.getServiceConfig(serviceTypeLocation);
   }
 
+  /**
+   * {@inheritDoc}
+   */
   @Override
   public List<ServiceInstanceConfiguration> getServiceConfigList(ServiceType serviceTypeLocation) {
-    // This implementation supports only one configuration per service type
-    return Collections.singletonList(svcConfigurations.get(serviceTypeLocation));
+    return instances.getServiceConfigList(serviceTypeLocation);
   }
 
+  /**
+   * {@inheritDoc}
+   */
   @Override
   public Optional<ServiceInstanceConfiguration> getServiceConfigIfExists(ServiceType serviceType) {
-    return Optional.ofNullable(svcConfigurations.get(serviceType));
+    return instances.getServiceConfigIfExists(serviceType);
   }
 
+  /**
+   * Description of service instances bound to the app.
+   */
+  public static class Builder {
+
+    private final Map<String, ServiceInstanceConfiguration> instancesByName =
+        new LinkedHashMap<>();
+
+    private final Map<ServiceType, List<ServiceInstanceConfiguration>> instancesByType =
+        new EnumMap<>(ServiceType.class);
+
+    private Builder() {
+    }
+
+    public static Builder newInstance() {
+      return new Builder();
+    }
+
+    private static Builder of(Map<ServiceType, ServiceInstanceConfiguration> svcConfigurations) {
+      Builder builder = new Builder();
+      svcConfigurations.forEach((type, instance) -> {
+        if (instance != null) {
+          builder.withService(type, instance);
+        }
+      });
+      return builder;
+    }
+
+    /**
+     * Adds service instance of given type. Instances of the same type are listed in order they
+     * were added, when more instances have the same name, the first one is found by name.
+     *
+     * @param serviceType type of service
+     * @param instance configuration of service instance
+     * @return this builder
+     */
+    public Builder withService(ServiceType serviceType, ServiceInstanceConfiguration instance) {
+      Preconditions.checkNotNull(serviceType, "Service type can't be null!");
+      Preconditions.checkNotNull(instance, "Service instance configuration can't be null!");
+      instancesByType.computeIfAbsent(serviceType, type -> new ArrayList<>()).add(instance);
+      if (instance.getName() != null) {
+        instancesByName.putIfAbsent(instance.getName(), instance);
+      }
+      return this;
+    }
+
+    public SimpleAppConfiguration build() {
+      return new SimpleAppConfiguration(this);
+    }
+  }
 }
@@ -16,6 +16,7 @@
 package org.trustedanalytics.hadoop.config.client.helper;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.trustedanalytics.hadoop.config.client.AppConfiguration;
 import org.trustedanalytics.hadoop.config.client.Configurations;
 import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
@@ -44,6 +45,8 @@ class HadoopClient {
 
   private ServiceInstanceConfiguration krbServiceConfiguration;
 
+  private boolean impersonation;
+
   private HadoopClient() {
   }
 
@@ -60,15 +63,53 @@ class HadoopClient {
 
   /**
    * {@inheritDoc}
+   *
+   * In impersonation mode configuration carries credentials of service principal, user identified
+   * by token is impersonated by UGI returned from {@link #getProxyUser(Configuration, String)}.
    */
   public Configuration createConfig(JwtToken jwtToken) throws LoginException, IOException {
     Configuration hadoopConf = this.serviceConfiguration.asHadoopConfiguration();
     if (isKerberosEnabled(hadoopConf)) {
-      loginManager.loginInHadoop(getLoggedUserIdentity(jwtToken), hadoopConf);
+      if (impersonation) {
+        getProxyUsers(hadoopConf).setTicketCache(hadoopConf);
+      } else {
+        loginManager.loginInHadoop(getLoggedUserIdentity(jwtToken), hadoopConf);
+      }
     }
     return hadoopConf;
   }
 
+  /**
+   * Returns UGI of user impersonated by service principal.
+   *
+   * @param hadoopConf configuration created for the user
+   * @param user impersonated user
+   * @return proxy UGI, or empty when impersonation mode is off or kerberos is disabled
+   * @throws LoginException, IOException
+   */
+  Optional<UserGroupInformation> getProxyUser(Configuration hadoopConf, String user)
+      throws LoginException, IOException {
+    if (!impersonation || !isKerberosEnabled(hadoopConf)) {
+      return Optional.empty();
+    }
+    return Optional.of(getProxyUsers(hadoopConf).get(user));
+  }
+
+  /**
+   * Returns UGI of service principal, that impersonates end users. Meant for clients that
+   * authenticate as current user and pass end user to the server themselves (i.e. hive).
+   *
+   * @param hadoopConf configuration of request
+   * @return service UGI, empty if users aren't impersonated
+   */
+  Optional<UserGroupInformation> getImpersonatingUser(Configuration hadoopConf)
+      throws LoginException, IOException {
+    if (!impersonation || !isKerberosEnabled(hadoopConf)) {
+      return Optional.empty();
+    }
+    return Optional.of(getProxyUsers(hadoopConf).getServiceUgi());
+  }
+
   /**
    * {@inheritDoc}
    */
@@ -98,6 +139,11 @@ class HadoopClient {
                                                      + " not found in configuration!"));
   }
 
+  private ProxyUsers getProxyUsers(Configuration hadoopConf) throws LoginException, IOException {
+    return ProxyUsers.of(loginManager, getKrbServiceProperty(Property.USER),
+                         this::getLoggedUserIdentity, hadoopConf);
+  }
+
   void setLoginManager(Optional<KrbLoginManager> loginManager) {
     this.loginManager = loginManager.orElse(getDefaultLoginManager());
   }
@@ -110,6 +156,10 @@ class HadoopClient {
     this.krbServiceConfiguration = krbServiceConfiguration;
   }
 
+  void setImpersonation(boolean impersonation) {
+    this.impersonation = impersonation;
+  }
+
   private KrbLoginManager getDefaultLoginManager() {
     String kdc = getKrbServiceProperty(Property.KRB_KDC);
     String realm = getKrbServiceProperty(Property.KRB_REALM);
@@ -131,6 +181,8 @@ class HadoopClient {
 
     private ServiceType serviceType;
 
+    private Boolean impersonation;
+
     private final HadoopClient hadoopClient = new HadoopClient();
 
     private Builder() {
@@ -165,6 +217,16 @@ class HadoopClient {
       return this;
     }
 
+    /**
+     * Users identified by jwt tokens are impersonated by service principal instead of being
+     * logged in one by one. When not set, {@code hadoop.utils.krb5.impersonation} system property
+     * decides.
+     */
+    public Builder withImpersonation(boolean impersonation) {
+      this.impersonation = impersonation;
+      return this;
+    }
+
     public Optional<String> getServiceName() {
       return Optional.ofNullable(serviceName);
     }
@@ -185,11 +247,15 @@ class HadoopClient {
       return Optional.ofNullable(this.serviceType);
     }
 
+    public Optional<Boolean> getImpersonation() {
+      return Optional.ofNullable(this.impersonation);
+    }
+
     public HadoopClient build() {
       AppConfiguration conf = getAppConfiguration()
           .orElseGet(() -> {
             try {
-              return Configurations.newInstanceFromEnv();
+              return Configurations.sharedInstanceFromEnv();
             } catch (IOException ignore) {
               throw new IllegalStateException("Unable to read configuration. Environment variable "
                                               + ConfigConstants.VCAP_SERVICES +
@@ -214,6 +280,8 @@ class HadoopClient {
       if (HadoopClient.isKerberosEnabled(hadoopConf)) {
         this.hadoopClient.setLoginManager(getLoginManager());
       }
+      this.hadoopClient.setImpersonation(getImpersonation()
+          .orElseGet(() -> Boolean.getBoolean(ProxyUsers.KRB5_IMPERSONATION)));
       return this.hadoopClient;
     }
   }
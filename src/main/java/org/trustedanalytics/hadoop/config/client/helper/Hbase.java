@@ -16,6 +16,7 @@
 package org.trustedanalytics.hadoop.config.client.helper;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.collect.ImmutableMap;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
@@ -29,6 +30,8 @@ import org.trustedanalytics.hadoop.config.client.Property;
 import org.trustedanalytics.hadoop.config.client.ServiceType;
 
 import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
 
 import javax.security.auth.login.LoginException;
 
@@ -76,6 +79,8 @@ import javax.security.auth.login.LoginException;
  */
 public final class Hbase {
 
+  private static final HbaseDefaults HBASE_DEFAULTS = new HbaseDefaults();
+
   private final HadoopClient hadoopClient;
 
   private Hbase(HadoopClient hadoopClient) throws IOException {
@@ -116,7 +121,7 @@ public final class Hbase {
    * @throws LoginException, IOException
    */
   public Connection createConnection() throws LoginException, IOException {
-    Configuration hbaseConf = HBaseConfiguration.create(hadoopClient.createConfig());
+    Configuration hbaseConf = createHbaseConfig(hadoopClient.createConfig());
     String ticketCachePath = hbaseConf.get("hadoop.security.kerberos.ticket.cache.path");
     String userName = hadoopClient.getKrbServiceProperty(Property.USER);
     User user = UserProvider.instantiate(hbaseConf)
@@ -131,11 +136,14 @@ public final class Hbase {
    * @return hbase file system for user that is identified by jwt token
    */
   public Connection  createConnection(JwtToken jwtToken) throws LoginException, IOException {
-    Configuration hbaseConf = HBaseConfiguration.create(hadoopClient.createConfig(jwtToken));
+    Configuration hbaseConf = createHbaseConfig(hadoopClient.createConfig(jwtToken));
     String ticketCachePath = hbaseConf.get("hadoop.security.kerberos.ticket.cache.path");
     String userName = jwtToken.getUserId();
-    User user = UserProvider.instantiate(hbaseConf)
-        .create(UserGroupInformation.getBestUGI(ticketCachePath, userName));
+    Optional<UserGroupInformation> proxyUser = hadoopClient.getProxyUser(hbaseConf, userName);
+    UserGroupInformation ugi = proxyUser.isPresent()
+        ? proxyUser.get()
+        : UserGroupInformation.getBestUGI(ticketCachePath, userName);
+    User user = UserProvider.instantiate(hbaseConf).create(ugi);
     return ConnectionFactory.createConnection(hbaseConf, user);
   }
 
@@ -176,6 +184,61 @@ public final class Hbase {
     return hadoopClient.isKerberosEnabled(hadoopConf);
   }
 
+  /**
+   * Same as {@link HBaseConfiguration#create(Configuration)}, but default resources are not
+   * loaded and parsed again, values parsed by {@link HbaseDefaults} are set instead.
+   *
+   * @param serviceConf hadoop configuration of service
+   * @return hbase configuration overlaid with service configuration
+   */
+  @VisibleForTesting
+  static Configuration createHbaseConfig(Configuration serviceConf) {
+    Configuration conf = new Configuration(false);
+    HBASE_DEFAULTS.properties().forEach(conf::set);
+    HBaseConfiguration.merge(conf, serviceConf);
+    return conf;
+  }
+
+  /**
+   * Configuration loading the same resources as {@link HBaseConfiguration#create()}: hadoop
+   * default resources and hbase-default.xml, hbase-site.xml. Its properties are parsed once and
+   * kept as plain values until a default resource is added (see
+   * {@link Configuration#addDefaultResource(String)}), hadoop then reloads all configurations
+   * that load defaults, this one included, and values are parsed again on next use.
+   */
+  private static final class HbaseDefaults extends Configuration {
+
+    private volatile Map<String, String> properties;
+
+    private HbaseDefaults() {
+      super(true);
+      setClassLoader(HBaseConfiguration.class.getClassLoader());
+      HBaseConfiguration.addHbaseResources(this);
+    }
+
+    Map<String, String> properties() {
+      Map<String, String> parsed = properties;
+      if (parsed == null) {
+        synchronized (this) {
+          parsed = properties;
+          if (parsed == null) {
+            ImmutableMap.Builder<String, String> values = ImmutableMap.builder();
+            forEach(entry -> values.put(entry.getKey(), entry.getValue()));
+            parsed = values.build();
+            properties = parsed;
+          }
+        }
+      }
+      return parsed;
+    }
+
+    @Override
+    public synchronized void reloadConfiguration() {
+      super.reloadConfiguration();
+      properties = null;
+    }
+  }
+
   String getServiceProperty(Property property) {
     return this.hadoopClient.getServiceProperty(property);
   }
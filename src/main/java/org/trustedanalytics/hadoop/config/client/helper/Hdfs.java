@@ -19,6 +19,7 @@ import com.google.common.annotations.VisibleForTesting;
 
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
 import org.trustedanalytics.hadoop.config.client.Property;
 import org.trustedanalytics.hadoop.config.client.ServiceType;
@@ -26,6 +27,8 @@ import org.trustedanalytics.hadoop.config.client.ServiceType;
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
+import java.security.PrivilegedExceptionAction;
+import java.util.Optional;
 
 import javax.security.auth.login.LoginException;
 
@@ -136,6 +139,13 @@ public final class Hdfs {
     Configuration hadoopConf = createConfig(jwtToken);
     String user = jwtToken.getUserId();
     URI hdfsUri = new URI(hadoopClient.getServiceProperty(Property.HDFS_URI));
+    Optional<UserGroupInformation> proxyUser = hadoopClient.getProxyUser(hadoopConf, user);
+    if (proxyUser.isPresent()) {
+      // proxy UGI is shared by requests of the user, so cached file system would be shared too
+      // and closing it in one request would break the others
+      return proxyUser.get().doAs((PrivilegedExceptionAction<FileSystem>)
+                                      () -> FileSystem.newInstance(hdfsUri, hadoopConf));
+    }
     return FileSystem.get(hdfsUri, hadoopConf, user);
   }
 
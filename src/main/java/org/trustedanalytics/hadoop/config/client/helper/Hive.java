@@ -20,6 +20,7 @@ import java.net.URISyntaxException;
 import java.security.PrivilegedExceptionAction;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.util.Optional;
 
 import javax.security.auth.login.LoginException;
 
@@ -32,6 +33,8 @@ import org.trustedanalytics.hadoop.config.client.ServiceType;
 import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
 
 import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Preconditions;
 
 /**
  * Provides access to hive client connection and configuration. Applicable to services of type
@@ -96,6 +99,15 @@ public class Hive {
 
   private static final String JDBC_DRIVER = "org.apache.hive.jdbc.HiveDriver";
 
+  private static final String HIVE_PROXY_USER = "hive.server2.proxy.user";
+
+  /**
+   * Characters, that delimit parts of jdbc url. Hive driver doesn't unescape them in values of
+   * session variables, so user names containing them can't be passed at all.
+   */
+  private static final CharMatcher URL_DELIMITERS =
+      CharMatcher.anyOf(";=?#&").or(CharMatcher.WHITESPACE);
+
   private final HadoopClient hadoopClient;
 
   private Hive(HadoopClient hadoopClient) throws IOException {
@@ -212,16 +224,53 @@ public class Hive {
     Configuration hadoopConf = createConfig(jwtToken);
     String user = jwtToken.getUserId();
 
+    // kerberos transport of hive driver authenticates as current user, so service principal
+    // connects and hive server impersonates the end user
+    Optional<UserGroupInformation> serviceUser = hadoopClient.getImpersonatingUser(hadoopConf);
+    if (serviceUser.isPresent()) {
+      return getConnectionAs(serviceUser.get(), user,
+                             withProxyUser(getConnectionString(database), user));
+    }
     return getConnection(user, hadoopConf, getConnectionString(database));
   }
 
+  /**
+   * Adds session variable, that makes hive server run queries as given user. Session variables
+   * precede hive configuration (after '?') and hive variables (after '#') in jdbc url.
+   *
+   * @param jdbcUrl hive connection string
+   * @param user end user
+   * @return connection string with proxy user
+   * @throws IllegalArgumentException when user name contains delimiter of jdbc url, it could
+   *         add other session variables (i.e. another proxy user)
+   */
+  @VisibleForTesting
+  static String withProxyUser(String jdbcUrl, String user) {
+    Preconditions.checkArgument(!user.isEmpty() && URL_DELIMITERS.matchesNoneOf(user),
+                                "User name can't be passed to hive: %s", user);
+    int end = jdbcUrl.length();
+    for (char separator : new char[] {'?', '#'}) {
+      int found = jdbcUrl.indexOf(separator);
+      if (found >= 0 && found < end) {
+        end = found;
+      }
+    }
+    return jdbcUrl.substring(0, end) + ";" + HIVE_PROXY_USER + "=" + user
+           + jdbcUrl.substring(end);
+  }
+
   @VisibleForTesting
   static Connection getConnection(String user, Configuration hadoopConf, String jdbcUrl)
       throws InterruptedException, IOException {
     String ticketCachePath = hadoopConf.get("hadoop.security.kerberos.ticket.cache.path");
     UserGroupInformation signedOnUserSubject =
         UserGroupInformation.getBestUGI(ticketCachePath, user);
-    return (Connection) signedOnUserSubject.doAs((PrivilegedExceptionAction<Object>) () -> {
+    return getConnectionAs(signedOnUserSubject, user, jdbcUrl);
+  }
+
+  private static Connection getConnectionAs(UserGroupInformation ugi, String user, String jdbcUrl)
+      throws InterruptedException, IOException {
+    return (Connection) ugi.doAs((PrivilegedExceptionAction<Object>) () -> {
       Class.forName(JDBC_DRIVER);
       return DriverManager.getConnection(jdbcUrl, user, null);
     });
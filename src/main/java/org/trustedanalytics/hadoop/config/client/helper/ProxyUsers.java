@@ -0,0 +1,152 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client.helper;
+
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.cache.Cache;
+import com.google.common.cache.CacheBuilder;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.UncheckedExecutionException;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.trustedanalytics.hadoop.kerberos.KrbLoginManager;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+import javax.security.auth.login.LoginException;
+
+/**
+ * Users impersonated by service principal.
+ *
+ * Service principal is logged in once per login manager, configurations of following requests
+ * only point to its ticket cache. UGIs of end users are proxies created on top of its UGI with
+ * {@link UserGroupInformation#createProxyUser(String, UserGroupInformation)} and reused while
+ * the user is active (at most {@value #CACHED_PROXIES} users, forgotten after
+ * {@value #PROXY_IDLE_MINUTES} minutes without request), so requests of end users don't cause
+ * any KDC traffic. Credentials of service principal are kept fresh in place by login manager,
+ * proxies use them as they are.
+ *
+ * Cluster has to allow service principal to impersonate end users (hadoop.proxyuser.*).
+ */
+final class ProxyUsers {
+
+  static final String KRB5_IMPERSONATION = "hadoop.utils.krb5.impersonation";
+
+  // set by login manager together with ticket cache path
+  private static final String KRB5_KINIT_CMD_PROP_NAME = "hadoop.kerberos.kinit.command";
+
+  private static final int CACHED_PROXIES = 10000;
+
+  private static final long PROXY_IDLE_MINUTES = 30;
+
+  // weak keys of MapMaker are compared by identity, login managers are referenced weakly
+  private static final Map<KrbLoginManager, ConcurrentMap<String, ProxyUsers>> BY_LOGIN_MANAGER =
+      new MapMaker().weakKeys().makeMap();
+
+  private final UserGroupInformation serviceUgi;
+
+  private final Optional<String> ticketCachePath;
+
+  private final Cache<String, UserGroupInformation> proxies = CacheBuilder.newBuilder()
+      .maximumSize(CACHED_PROXIES)
+      .expireAfterAccess(PROXY_IDLE_MINUTES, TimeUnit.MINUTES)
+      .build();
+
+  private ProxyUsers(UserGroupInformation serviceUgi, Optional<String> ticketCachePath) {
+    this.serviceUgi = serviceUgi;
+    this.ticketCachePath = ticketCachePath;
+  }
+
+  /**
+   * Returns users impersonated by given service principal. Service principal is logged in only
+   * when it is requested for the first time, then it is also logged in hadoop with given
+   * configuration.
+   *
+   * @param loginManager login manager
+   * @param serviceUser service principal name
+   * @param login login of service principal
+   * @param hadoopConf configuration of request, that logs service principal in
+   * @return users impersonated by service principal
+   * @throws LoginException, IOException
+   */
+  static ProxyUsers of(KrbLoginManager loginManager, String serviceUser, ServiceLogin login,
+                       Configuration hadoopConf) throws LoginException, IOException {
+    Preconditions.checkNotNull(loginManager, "Login manager can't be null!");
+    ConcurrentMap<String, ProxyUsers> byServiceUser =
+        BY_LOGIN_MANAGER.computeIfAbsent(loginManager, manager -> new ConcurrentHashMap<>());
+    ProxyUsers proxyUsers = byServiceUser.get(serviceUser);
+    if (proxyUsers == null) {
+      synchronized (byServiceUser) {
+        proxyUsers = byServiceUser.get(serviceUser);
+        if (proxyUsers == null) {
+          Subject subject = login.login();
+          loginManager.loginInHadoop(subject, hadoopConf);
+          String location = hadoopConf.get(CommonConfigurationKeys.KERBEROS_TICKET_CACHE_PATH);
+          proxyUsers = new ProxyUsers(loginManager.getUGI(subject), Optional.ofNullable(location));
+          byServiceUser.put(serviceUser, proxyUsers);
+        }
+      }
+    }
+    return proxyUsers;
+  }
+
+  /**
+   * Points configuration to ticket cache of service principal, the same way login manager does
+   * when logging in hadoop.
+   *
+   * @param hadoopConf configuration of request
+   */
+  void setTicketCache(Configuration hadoopConf) {
+    ticketCachePath.ifPresent(location -> {
+      hadoopConf.set(CommonConfigurationKeys.KERBEROS_TICKET_CACHE_PATH, location);
+      hadoopConf.set(KRB5_KINIT_CMD_PROP_NAME, "kinit -c " + location);
+    });
+  }
+
+  UserGroupInformation getServiceUgi() {
+    return serviceUgi;
+  }
+
+  /**
+   * Returns UGI of end user impersonated by service principal.
+   *
+   * @param user end user name
+   * @return proxy UGI, the same instance for calls with the same user while it is cached
+   */
+  UserGroupInformation get(String user) {
+    Preconditions.checkNotNull(user, "User can't be null!");
+    try {
+      return proxies.get(user, () -> UserGroupInformation.createProxyUser(user, serviceUgi));
+    } catch (ExecutionException | UncheckedExecutionException e) {
+      throw Throwables.propagate(e.getCause());
+    }
+  }
+
+  @FunctionalInterface
+  interface ServiceLogin {
+    Subject login() throws LoginException;
+  }
+}
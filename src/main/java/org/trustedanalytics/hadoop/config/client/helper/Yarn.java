@@ -16,6 +16,7 @@
 package org.trustedanalytics.hadoop.config.client.helper;
 
 import java.io.IOException;
+import java.util.Optional;
 
 import javax.security.auth.login.LoginException;
 
@@ -124,6 +125,10 @@ public final class Yarn {
     Configuration config = createConfig(token);
     String user = token.getUserId();
 
+    Optional<UserGroupInformation> proxyUser = hadoopClient.getProxyUser(config, user);
+    if (proxyUser.isPresent()) {
+      return createYarnClient(proxyUser.get(), config);
+    }
     return createYarnClient(user, config);
   }
 
@@ -140,6 +145,10 @@ public final class Yarn {
   private YarnClient createYarnClient(String user, Configuration config) throws IOException {
     String ticketCachePath = config.get("hadoop.security.kerberos.ticket.cache.path");
     UserGroupInformation ugi = UserGroupInformation.getBestUGI(ticketCachePath, user);
+    return createYarnClient(ugi, config);
+  }
+
+  private YarnClient createYarnClient(UserGroupInformation ugi, Configuration config) {
     YarnClient client = new DelegatingYarnClient(YarnClient.createYarnClient(), new UgiWrapper(ugi));
     client.init(config);
 
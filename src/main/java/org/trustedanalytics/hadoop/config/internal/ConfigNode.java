@@ -16,11 +16,29 @@
 package org.trustedanalytics.hadoop.config.internal;
 
 import java.util.List;
+import java.util.Optional;
+import java.util.function.BiConsumer;
 
 public interface ConfigNode {
 
+  /**
+   * Returns children of the node. List is immutable and created once, following calls return
+   * the same list.
+   *
+   * @return child nodes
+   */
   List<ConfigNode> getChildren();
 
+  /**
+   * Passes name and value of every child (in the same order as {@link #getChildren()}) to given
+   * action, without creating child nodes. Meant for walking large sections, whose nodes
+   * wouldn't be used afterwards.
+   *
+   * @param action consumer of child name (null for unnamed array element) and value (empty for
+   *               objects and arrays)
+   */
+  void forEachChild(BiConsumer<String, String> action);
+
   List<ConfigNode> findAll(String name);
 
   ConfigNode find(String name);
@@ -29,8 +47,58 @@ public interface ConfigNode {
 
   ConfigNode selectOne(String name, String value);
 
+  /**
+   * Returns all nodes in the subtree, that have textual child with given name. Returned nodes
+   * are named by value of that child and ordered as {@link #selectOne(String, String)} searches
+   * them.
+   *
+   * @param name child name
+   * @return matching nodes, empty list if there are none
+   */
+  List<ConfigNode> selectAll(String name);
+
+  /**
+   * Compares whole subtree of this node with subtree of other node: field names, their order and
+   * values. Names of the nodes themselves are not compared.
+   *
+   * @param other node to compare with
+   * @return true if both subtrees are equal
+   */
+  boolean sameContent(ConfigNode other);
+
+  /**
+   * Returns all nodes found at given path, starting at this node. Nothing found is signalled by
+   * empty list, not by exception. Result is memoized, following calls with the same path
+   * instance return the same list.
+   *
+   * @param path path to evaluate
+   * @return immutable list of found nodes, empty if some step of the path found nothing
+   */
+  List<ConfigNode> resolveAll(ConfigPath path);
+
+  /**
+   * Returns single node found at given path, starting at this node.
+   *
+   * @param path path to evaluate
+   * @return found node, empty if some step of the path found nothing
+   * @throws IllegalStateException when path leads to more nodes
+   */
+  default Optional<ConfigNode> resolve(ConfigPath path) {
+    List<ConfigNode> found = resolveAll(path);
+    if (found.size() > 1) {
+      throw new IllegalStateException("Incorrect configuration path! Path can't fork!");
+    }
+    return found.isEmpty() ? Optional.empty() : Optional.of(found.get(0));
+  }
+
   String value();
 
   String name();
 
+  /**
+   * @return false for nodes without name (i.e. array elements without name field), whose
+   *         {@link #name()} throws
+   */
+  boolean hasName();
+
 }
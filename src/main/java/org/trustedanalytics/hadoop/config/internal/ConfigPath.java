@@ -15,32 +15,188 @@
  */
 package org.trustedanalytics.hadoop.config.internal;
 
+import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.Lists;
+
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
 import java.util.function.Function;
 
+/**
+ * Location of a node in configuration, sequence of steps done from some starting node (see
+ * {@link ConfigNode#resolveAll(ConfigPath)}). Steps are declarative (get, find, selectOne,
+ * children), so they can be evaluated on document index without creating intermediate nodes
+ * and without exceptions as not-found signal.
+ *
+ * Results are memoized per node and path instance, path must not be changed once it's used.
+ * Paths shared by all lookups (i.e. of properties) are made unmodifiable with
+ * {@link #unmodifiable()}.
+ */
 public class ConfigPath {
 
-  private final List<Function<ConfigNode, List<ConfigNode>>> stack = new ArrayList<>();
+  private final List<Step> steps;
 
-  private ConfigPath() {
+  private ConfigPath(List<Step> steps) {
+    this.steps = steps;
   }
 
   public static ConfigPath createPath() {
-    return new ConfigPath();
+    return new ConfigPath(new ArrayList<>());
+  }
+
+  /**
+   * Adds step to direct child with given name (see {@link ConfigNode#get(String)}).
+   */
+  public ConfigPath get(String name) {
+    return add(new Step(Kind.GET, name, null, null));
+  }
+
+  /**
+   * Adds step to first node with given name in the subtree (see {@link ConfigNode#find(String)}).
+   */
+  public ConfigPath find(String name) {
+    return add(new Step(Kind.FIND, name, null, null));
+  }
+
+  /**
+   * Adds step to node having textual child with given name and value (see
+   * {@link ConfigNode#selectOne(String, String)}).
+   */
+  public ConfigPath selectOne(String name, String value) {
+    return add(new Step(Kind.SELECT_ONE, name, value, null));
+  }
+
+  /**
+   * Adds step to all children of the node (see {@link ConfigNode#getChildren()}).
+   */
+  public ConfigPath children() {
+    return add(new Step(Kind.CHILDREN, null, null, null));
   }
 
+  /**
+   * Adds opaque step. Such steps can't be evaluated on document index, nodes they return are
+   * used instead and {@link NullPointerException} thrown by them means that nothing was found.
+   */
   public ConfigPath add(Function<ConfigNode, List<ConfigNode>> action) {
-    this.stack.add(action);
-    return this;
+    return add(new Step(Kind.FUNCTION, null, null, Preconditions.checkNotNull(action)));
   }
 
   public ConfigPath append(ConfigPath path) {
-    this.stack.addAll(path.getStack());
+    this.steps.addAll(path.getSteps());
     return this;
   }
 
+  /**
+   * Returns copy of the path, that can't be changed: adding steps to it throws
+   * {@link UnsupportedOperationException}. Such path can be shared, other paths can still
+   * {@link #append(ConfigPath)} it.
+   *
+   * @return unmodifiable path
+   */
+  public ConfigPath unmodifiable() {
+    return new ConfigPath(ImmutableList.copyOf(steps));
+  }
+
+  public List<Step> getSteps() {
+    return this.steps;
+  }
+
+  /**
+   * Returns steps as functions, that evaluate them with {@link ConfigNode} methods.
+   */
   public List<Function<ConfigNode, List<ConfigNode>>> getStack() {
-    return this.stack;
+    return Lists.transform(steps, Step::asFunction);
+  }
+
+  private ConfigPath add(Step step) {
+    this.steps.add(step);
+    return this;
+  }
+
+  public enum Kind {
+    GET, FIND, SELECT_ONE, CHILDREN, FUNCTION
+  }
+
+  public static final class Step {
+
+    private final Kind kind;
+
+    private final String name;
+
+    private final String value;
+
+    private final Function<ConfigNode, List<ConfigNode>> function;
+
+    private Step(Kind kind, String name, String value,
+                 Function<ConfigNode, List<ConfigNode>> function) {
+      this.kind = kind;
+      this.name = name;
+      this.value = value;
+      this.function = function;
+    }
+
+    public Kind getKind() {
+      return kind;
+    }
+
+    public String getName() {
+      return name;
+    }
+
+    public String getValue() {
+      return value;
+    }
+
+    public Function<ConfigNode, List<ConfigNode>> getFunction() {
+      return function;
+    }
+
+    /**
+     * Evaluates step with {@link ConfigNode} methods, used for nodes that can't evaluate it
+     * themselves and for opaque steps.
+     *
+     * @param node starting node
+     * @return found nodes, empty if nothing was found
+     */
+    List<ConfigNode> applyTo(ConfigNode node) {
+      try {
+        return asFunction().apply(node);
+      } catch (NullPointerException notFound) {
+        return Collections.emptyList();
+      }
+    }
+
+    private Function<ConfigNode, List<ConfigNode>> asFunction() {
+      switch (kind) {
+        case GET:
+          return node -> Lists.newArrayList(node.get(name));
+        case FIND:
+          return node -> Lists.newArrayList(node.find(name));
+        case SELECT_ONE:
+          return node -> Lists.newArrayList(node.selectOne(name, value));
+        case CHILDREN:
+          return ConfigNode::getChildren;
+        default:
+          return function;
+      }
+    }
+
+    @Override
+    public String toString() {
+      switch (kind) {
+        case GET:
+          return "get(" + name + ")";
+        case FIND:
+          return "find(" + name + ")";
+        case SELECT_ONE:
+          return "selectOne(" + name + "=" + value + ")";
+        case CHILDREN:
+          return "children()";
+        default:
+          return "function";
+      }
+    }
   }
-}
\ No newline at end of file
+}
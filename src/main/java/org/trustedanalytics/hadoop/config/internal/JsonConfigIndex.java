@@ -0,0 +1,420 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.internal;
+
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonParser;
+import com.fasterxml.jackson.core.JsonToken;
+import com.fasterxml.jackson.databind.JsonNode;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.function.Predicate;
+
+/**
+ * Flattened view of a json document, built once and shared by all config nodes of the document.
+ *
+ * Nodes are numbered in pre-order, so descendants of a node occupy contiguous range of positions
+ * that starts right after it. For every field name, positions of its values are kept sorted,
+ * which turns recursive searches of jackson (e.g. {@link JsonNode#findValue(String)}) into a hash
+ * lookup followed by binary search within the range of the searched node.
+ *
+ * Index can be read straight from json text, without building jackson tree. Strings longer than
+ * {@link #LAZY_TEXT_LENGTH} (i.e. base64 encoded configuration zips) are then not copied, only
+ * their offset in the source text is kept and they are decoded when asked for. Other strings
+ * are taken from {@link StringPool}.
+ */
+final class JsonConfigIndex {
+
+  static final int LAZY_TEXT_LENGTH = 4096;
+
+  private static final int[] NONE = new int[0];
+
+  private static final byte MISSING = 0;
+
+  private static final byte OBJECT = 1;
+
+  private static final byte ARRAY = 2;
+
+  private static final byte TEXT = 3;
+
+  private static final byte SCALAR = 4;
+
+  private final JsonFactory factory;
+
+  private final String source;
+
+  private final byte[] kinds;
+
+  /** Text of string and scalar nodes, offset in source for lazily decoded strings. */
+  private final Object[] texts;
+
+  /** Field name under which node is stored in its parent object, null for other nodes. */
+  private final String[] fieldNames;
+
+  private final int[] parents;
+
+  /** Position right after the last descendant of node. */
+  private final int[] ends;
+
+  private final Map<String, int[]> positionsByFieldName;
+
+  private final AtomicReferenceArray<List<ConfigNode>> children;
+
+  private JsonConfigIndex(Builder builder, JsonFactory factory, String source) {
+    this(factory, source, toByteArray(builder.kinds), builder.texts.toArray(),
+         builder.fieldNames.toArray(new String[builder.fieldNames.size()]),
+         toArray(builder.parents), toArray(builder.ends));
+  }
+
+  private JsonConfigIndex(JsonFactory factory, String source, byte[] kinds, Object[] texts,
+                          String[] fieldNames, int[] parents, int[] ends) {
+    this.factory = factory;
+    this.source = source;
+    this.kinds = kinds;
+    this.texts = texts;
+    this.fieldNames = fieldNames;
+    this.parents = parents;
+    this.ends = ends;
+    Map<String, List<Integer>> positions = new HashMap<>();
+    for (int i = 0; i < fieldNames.length; i++) {
+      if (fieldNames[i] != null) {
+        positions.computeIfAbsent(fieldNames[i], name -> new ArrayList<>()).add(i);
+      }
+    }
+    positionsByFieldName = new HashMap<>();
+    positions.forEach((name, found) -> positionsByFieldName.put(name, toArray(found)));
+    children = new AtomicReferenceArray<>(kinds.length);
+  }
+
+  /**
+   * Recreates index from its parts (see {@link JsonConfigSnapshot}).
+   *
+   * @param texts text of nodes, or offset in source for lazily decoded strings
+   */
+  static JsonConfigIndex restore(JsonFactory factory, String source, byte[] kinds,
+                                 Object[] texts, String[] fieldNames, int[] parents,
+                                 int[] ends) {
+    return new JsonConfigIndex(factory, source, kinds, texts, fieldNames, parents, ends);
+  }
+
+  /**
+   * Indexes already parsed jackson tree.
+   */
+  static JsonConfigIndex of(JsonNode root) {
+    Builder builder = new Builder();
+    builder.visit(null, -1, root);
+    return new JsonConfigIndex(builder, null, null);
+  }
+
+  /**
+   * Indexes json text token by token. Fields of the root object, which names are not accepted by
+   * given filter, are skipped.
+   *
+   * @param factory jackson factory used to create parsers
+   * @param json json text
+   * @param rootFields filter of root object's fields
+   * @return index of the document
+   * @throws IOException when json is malformed
+   */
+  static JsonConfigIndex parse(JsonFactory factory, String json, Predicate<String> rootFields)
+      throws IOException {
+    Builder builder = new Builder();
+    try (JsonParser parser = factory.createParser(new StringReader(json))) {
+      builder.visit(null, -1, parser, parser.nextToken(), rootFields);
+    }
+    return new JsonConfigIndex(builder, factory, json);
+  }
+
+  int size() {
+    return kinds.length;
+  }
+
+  byte kind(int position) {
+    return kinds[position];
+  }
+
+  /**
+   * Returns text of node as it is stored: string, offset in source of lazily decoded string or
+   * null for objects and arrays.
+   */
+  Object storedText(int position) {
+    return texts[position];
+  }
+
+  boolean isMissing(int position) {
+    return kinds[position] == MISSING;
+  }
+
+  boolean isArray(int position) {
+    return kinds[position] == ARRAY;
+  }
+
+  boolean isTextual(int position) {
+    return kinds[position] == TEXT;
+  }
+
+  /**
+   * Returns text of node, like {@link JsonNode#asText()} does. Null for missing node.
+   */
+  String text(int position) {
+    switch (kinds[position]) {
+      case MISSING:
+        return null;
+      case OBJECT:
+      case ARRAY:
+        return "";
+      default:
+        Object text = texts[position];
+        return text instanceof String ? (String) text : decode((Integer) text);
+    }
+  }
+
+  String fieldName(int position) {
+    return fieldNames[position];
+  }
+
+  int parent(int position) {
+    return parents[position];
+  }
+
+  int end(int position) {
+    return ends[position];
+  }
+
+  /**
+   * Returns position of direct child stored under given field name, or -1 if there is none.
+   */
+  int child(int position, String name) {
+    for (int child = position + 1; child < ends[position]; child = ends[child]) {
+      if (name.equals(fieldNames[child])) {
+        return child;
+      }
+    }
+    return -1;
+  }
+
+  /**
+   * Returns position of the first (in pre-order) descendant stored under given field name, or -1
+   * if there is none. Same node as {@link JsonNode#findValue(String)} finds.
+   */
+  int first(int position, String name) {
+    int[] positions = positionsByFieldName.getOrDefault(name, NONE);
+    int from = lowerBound(positions, position + 1);
+    return from < positions.length && positions[from] < ends[position] ? positions[from] : -1;
+  }
+
+  /**
+   * Returns positions of descendants stored under given field name, skipping those nested in
+   * another match. Parents of returned nodes are the ones {@link JsonNode#findParents(String)}
+   * finds, in the same order.
+   */
+  List<Integer> outermost(int position, String name) {
+    int[] positions = positionsByFieldName.getOrDefault(name, NONE);
+    List<Integer> found = new ArrayList<>();
+    int skipUntil = 0;
+    for (int i = lowerBound(positions, position + 1);
+         i < positions.length && positions[i] < ends[position]; i++) {
+      if (positions[i] >= skipUntil) {
+        found.add(positions[i]);
+        skipUntil = ends[positions[i]];
+      }
+    }
+    return found;
+  }
+
+  /**
+   * Compares subtree of node at given position with subtree of node in other index. Field name
+   * of the compared nodes themselves is ignored. Node compared with itself is equal without
+   * decoding its lazy strings.
+   */
+  boolean sameSubtree(int position, JsonConfigIndex other, int otherPosition) {
+    if (other == this && otherPosition == position) {
+      return true;
+    }
+    int size = ends[position] - position;
+    if (size != other.ends[otherPosition] - otherPosition) {
+      return false;
+    }
+    for (int i = 0; i < size; i++) {
+      int mine = position + i;
+      int theirs = otherPosition + i;
+      if (kinds[mine] != other.kinds[theirs]
+          || (i > 0 && !Objects.equals(fieldNames[mine], other.fieldNames[theirs]))
+          || (i > 0 && parents[mine] - position != other.parents[theirs] - otherPosition)
+          || !Objects.equals(text(mine), other.text(theirs))) {
+        return false;
+      }
+    }
+    return true;
+  }
+
+  List<ConfigNode> cachedChildren(int position) {
+    return children.get(position);
+  }
+
+  List<ConfigNode> cacheChildren(int position, List<ConfigNode> nodeChildren) {
+    return children.compareAndSet(position, null, nodeChildren)
+        ? nodeChildren : children.get(position);
+  }
+
+  private String decode(int offset) {
+    try (StringReader reader = new StringReader(source)) {
+      reader.skip(offset);
+      try (JsonParser parser = factory.createParser(reader)) {
+        parser.nextToken();
+        return parser.getText();
+      }
+    } catch (IOException e) {
+      throw new IllegalStateException("Can't decode json string at offset " + offset, e);
+    }
+  }
+
+  private static int lowerBound(int[] positions, int position) {
+    int found = Arrays.binarySearch(positions, position);
+    return found >= 0 ? found : -found - 1;
+  }
+
+  private static byte[] toByteArray(List<Byte> list) {
+    byte[] array = new byte[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private static int[] toArray(List<Integer> list) {
+    int[] array = new int[list.size()];
+    for (int i = 0; i < array.length; i++) {
+      array[i] = list.get(i);
+    }
+    return array;
+  }
+
+  private static final class Builder {
+
+    private final List<Byte> kinds = new ArrayList<>();
+
+    private final List<Object> texts = new ArrayList<>();
+
+    private final List<String> fieldNames = new ArrayList<>();
+
+    private final List<Integer> parents = new ArrayList<>();
+
+    private final List<Integer> ends = new ArrayList<>();
+
+    private int add(String fieldName, int parent, byte kind, Object text) {
+      int position = kinds.size();
+      kinds.add(kind);
+      texts.add(text instanceof String ? StringPool.intern((String) text) : text);
+      fieldNames.add(StringPool.intern(fieldName));
+      parents.add(parent);
+      ends.add(position + 1);
+      return position;
+    }
+
+    private void visit(String fieldName, int parent, JsonNode node) {
+      if (node == null) {
+        add(fieldName, parent, MISSING, null);
+      } else if (node.isObject()) {
+        int position = add(fieldName, parent, OBJECT, null);
+        Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+        while (fields.hasNext()) {
+          Map.Entry<String, JsonNode> field = fields.next();
+          visit(field.getKey(), position, field.getValue());
+        }
+        ends.set(position, kinds.size());
+      } else if (node.isArray()) {
+        int position = add(fieldName, parent, ARRAY, null);
+        node.elements().forEachRemaining(element -> visit(null, position, element));
+        ends.set(position, kinds.size());
+      } else {
+        add(fieldName, parent, node.isTextual() ? TEXT : SCALAR, node.asText());
+      }
+    }
+
+    private void visit(String fieldName, int parent, JsonParser parser, JsonToken token,
+                       Predicate<String> fields) throws IOException {
+      if (token == null) {
+        add(fieldName, parent, MISSING, null);
+        return;
+      }
+      switch (token) {
+        case START_OBJECT:
+          int object = add(fieldName, parent, OBJECT, null);
+          while (parser.nextToken() == JsonToken.FIELD_NAME) {
+            String name = parser.getCurrentName();
+            JsonToken value = parser.nextToken();
+            if (fields.test(name)) {
+              visit(name, object, parser, value, field -> true);
+            } else {
+              parser.skipChildren();
+            }
+          }
+          ends.set(object, kinds.size());
+          break;
+        case START_ARRAY:
+          int array = add(fieldName, parent, ARRAY, null);
+          for (JsonToken element = parser.nextToken(); element != JsonToken.END_ARRAY;
+               element = parser.nextToken()) {
+            visit(null, array, parser, element, field -> true);
+          }
+          ends.set(array, kinds.size());
+          break;
+        case VALUE_STRING:
+          // string is not read yet, parser stands right after its opening quote (token location
+          // can't be used, it points at field name for values of object fields)
+          long quote = parser.getCurrentLocation().getCharOffset() - 1;
+          if (parser.getTextLength() > LAZY_TEXT_LENGTH) {
+            add(fieldName, parent, TEXT, Math.toIntExact(quote));
+          } else {
+            add(fieldName, parent, TEXT, parser.getText());
+          }
+          break;
+        default:
+          add(fieldName, parent, SCALAR, scalarText(parser, token));
+      }
+    }
+
+    /**
+     * Same text as {@link JsonNode#asText()} of a node, that object mapper would create.
+     */
+    private static String scalarText(JsonParser parser, JsonToken token) throws IOException {
+      switch (token) {
+        case VALUE_NUMBER_INT:
+          return parser.getNumberValue().toString();
+        case VALUE_NUMBER_FLOAT:
+          return Double.toString(parser.getDoubleValue());
+        case VALUE_TRUE:
+          return "true";
+        case VALUE_FALSE:
+          return "false";
+        case VALUE_NULL:
+          return "null";
+        default:
+          throw new IOException("Unexpected json token: " + token);
+      }
+    }
+  }
+}
@@ -17,99 +17,231 @@ package org.trustedanalytics.hadoop.config.internal;
 
 import com.fasterxml.jackson.databind.JsonNode;
 import com.google.common.base.Preconditions;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.MapMaker;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.Optional;
-import java.util.function.Predicate;
+import java.util.Map;
+import java.util.function.BiConsumer;
 
+/**
+ * Config node of json document. All nodes of a document share {@link JsonConfigIndex} built
+ * when the document's root node is created, so lookups don't scan the document and children of
+ * a node are created only once.
+ */
 public class JsonConfigNode implements ConfigNode {
 
-  private final JsonNode root;
+  private final JsonConfigIndex index;
+
+  private final int position;
 
   private String name = null;
 
-  private JsonConfigNode(String name, JsonNode rootNode) {
-    this.root = rootNode;
-    this.name = name;
-  }
+  /**
+   * Results of {@link #resolveAll(ConfigPath)}, paths are weak keys compared by identity.
+   */
+  private volatile Map<ConfigPath, List<ConfigNode>> resolved;
 
-  private JsonConfigNode(JsonNode rootNode) {
-    this.root = rootNode;
+  private JsonConfigNode(String name, JsonConfigIndex index, int position) {
+    this.index = index;
+    this.position = position;
+    this.name = name;
   }
 
   public static JsonConfigNode createInstance(JsonNode node) {
-    return new JsonConfigNode(node);
+    return new JsonConfigNode(null, JsonConfigIndex.of(node), 0);
   }
 
   public static JsonConfigNode createInstance(String name, JsonNode node) {
-    return new JsonConfigNode(name, node);
+    return new JsonConfigNode(name, JsonConfigIndex.of(node), 0);
+  }
+
+  static JsonConfigNode createInstance(JsonConfigIndex index) {
+    return new JsonConfigNode(null, index, 0);
+  }
+
+  private JsonConfigNode createInstance(String name, int position) {
+    return new JsonConfigNode(name, index, position);
   }
 
   @Override
   public List<ConfigNode> getChildren() {
-    List<ConfigNode> ret = new ArrayList<>();
-    if (root.isArray()) {
-      root.elements().forEachRemaining(child -> {
-        JsonNode nameNode = child.get(ConfigConstants.INSTANCE_NAME_PROP_NAME);
-        if (nameNode == null) {
-          ret.add(createInstance(child));
-        } else {
-          ret.add(createInstance(nameNode.asText(), child));
-        }
-      });
-    } else {
-      root.fields().forEachRemaining(child -> {
-        String localName = child.getKey();
-        JsonNode value = child.getValue();
-        ret.add(createInstance(localName, value));
-      });
+    List<ConfigNode> ret = index.cachedChildren(position);
+    if (ret != null) {
+      return ret;
+    }
+    if (index.isMissing(position)) {
+      throw new NullPointerException("Config node has no content");
+    }
+    ImmutableList.Builder<ConfigNode> children = ImmutableList.builder();
+    for (int child = position + 1; child < index.end(position); child = index.end(child)) {
+      children.add(createInstance(childName(child), child));
+    }
+    return index.cacheChildren(position, children.build());
+  }
+
+  @Override
+  public void forEachChild(BiConsumer<String, String> action) {
+    if (index.isMissing(position)) {
+      throw new NullPointerException("Config node has no content");
+    }
+    for (int child = position + 1; child < index.end(position); child = index.end(child)) {
+      action.accept(childName(child), index.text(child));
     }
-    return ret;
   }
 
   @Override
   public ConfigNode find(String name) {
-    JsonNode found = Preconditions.checkNotNull(root.findValue(name),
-                                                "Can not find config node: " + name);
+    int found = index.first(position, name);
+    if (found < 0) {
+      throw new NullPointerException("Can not find config node: " + name);
+    }
     return createInstance(name, found);
   }
 
   @Override
   public List<ConfigNode> findAll(String name) {
-    List<JsonNode> parents =
-        Preconditions.checkNotNull(root.findParents(name),
-                                   "None of " + name + " nodes found in configuration");
     List<ConfigNode> found = new ArrayList<>();
-    parents.forEach(parent -> found.add(JsonConfigNode.createInstance(name, parent.get(name))));
+    index.outermost(position, name).forEach(value -> found.add(createInstance(name, value)));
     return found;
   }
 
   @Override
   public ConfigNode get(String name) {
-    JsonNode got = Preconditions.checkNotNull(root.get(name),
-                                              "Can not get config node: " + name);
+    int got = index.child(position, name);
+    if (got < 0) {
+      throw new NullPointerException("Can not get config node: " + name);
+    }
     return createInstance(name, got);
   }
 
   @Override
   public ConfigNode selectOne(String name, String value) {
-    List<JsonNode> parents =
-        Preconditions.checkNotNull(root.findParents(name),
-                                   "None of " + name + " nodes found in configuration");
     //We assume that only one child node meets these conditions.
-    Predicate<JsonNode> conditions =
-        parent -> parent.get(name).isTextual() && parent.get(name).textValue().equals(value);
-    Optional<JsonNode> found = parents.stream().filter(conditions).findFirst();
-    return createInstance(value,
-        found.orElseThrow(() -> new NullPointerException("Can't find child node that has name "
-                                                         + name + " and value " + value + "!")
-        ));
+    for (int found : index.outermost(position, name)) {
+      if (index.isTextual(found) && index.text(found).equals(value)) {
+        return createInstance(value, index.parent(found));
+      }
+    }
+    throw new NullPointerException("Can't find child node that has name " + name
+                                   + " and value " + value + "!");
+  }
+
+  @Override
+  public List<ConfigNode> selectAll(String name) {
+    List<ConfigNode> found = new ArrayList<>();
+    for (int value : index.outermost(position, name)) {
+      if (index.isTextual(value)) {
+        found.add(createInstance(index.text(value), index.parent(value)));
+      }
+    }
+    return found;
+  }
+
+  @Override
+  public boolean sameContent(ConfigNode other) {
+    if (!(other instanceof JsonConfigNode)) {
+      return false;
+    }
+    JsonConfigNode that = (JsonConfigNode) other;
+    return index.sameSubtree(position, that.index, that.position);
+  }
+
+  @Override
+  public List<ConfigNode> resolveAll(ConfigPath path) {
+    Map<ConfigPath, List<ConfigNode>> memo = resolved;
+    if (memo == null) {
+      synchronized (this) {
+        memo = resolved;
+        if (memo == null) {
+          memo = new MapMaker().weakKeys().makeMap();
+          resolved = memo;
+        }
+      }
+    }
+    List<ConfigNode> found = memo.get(path);
+    if (found == null) {
+      found = evaluate(path);
+      memo.put(path, found);
+    }
+    return found;
+  }
+
+  private List<ConfigNode> evaluate(ConfigPath path) {
+    List<ConfigNode> current = ImmutableList.of(this);
+    for (ConfigPath.Step step : path.getSteps()) {
+      List<ConfigNode> next = new ArrayList<>();
+      for (ConfigNode node : current) {
+        if (node instanceof JsonConfigNode) {
+          ((JsonConfigNode) node).apply(step, next);
+        } else {
+          next.addAll(step.applyTo(node));
+        }
+      }
+      if (next.isEmpty()) {
+        return ImmutableList.of();
+      }
+      current = next;
+    }
+    return ImmutableList.copyOf(current);
+  }
+
+  /**
+   * Evaluates single step on the index, adds found nodes to the list.
+   */
+  private void apply(ConfigPath.Step step, List<ConfigNode> found) {
+    if (index.isMissing(position)) {
+      return;
+    }
+    switch (step.getKind()) {
+      case GET:
+        int got = index.child(position, step.getName());
+        if (got >= 0) {
+          found.add(createInstance(step.getName(), got));
+        }
+        break;
+      case FIND:
+        int first = index.first(position, step.getName());
+        if (first >= 0) {
+          found.add(createInstance(step.getName(), first));
+        }
+        break;
+      case SELECT_ONE:
+        for (int value : index.outermost(position, step.getName())) {
+          if (index.isTextual(value) && index.text(value).equals(step.getValue())) {
+            found.add(createInstance(step.getValue(), index.parent(value)));
+            break;
+          }
+        }
+        break;
+      case CHILDREN:
+        found.addAll(getChildren());
+        break;
+      default:
+        found.addAll(step.applyTo(this));
+    }
+  }
+
+  /**
+   * Elements of arrays are named by their name field, fields of objects by field name.
+   */
+  private String childName(int child) {
+    if (index.isArray(position)) {
+      int nameNode = index.child(child, ConfigConstants.INSTANCE_NAME_PROP_NAME);
+      return nameNode < 0 ? null : index.text(nameNode);
+    }
+    return index.fieldName(child);
   }
 
   @Override
   public String value() {
-    return Preconditions.checkNotNull(root.asText());
+    return Preconditions.checkNotNull(index.text(position));
+  }
+
+  @Override
+  public boolean hasName() {
+    return this.name != null;
   }
 
   @Override
@@ -15,27 +15,101 @@
  */
 package org.trustedanalytics.hadoop.config.internal;
 
+import com.fasterxml.jackson.core.JsonFactory;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Preconditions;
 
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.io.IOException;
+import java.nio.file.Path;
+import java.util.Optional;
+import java.util.Set;
+import java.util.function.Predicate;
 
 public final class JsonConfigurationReader
     implements ConfigurationReader {
 
+  private static final Logger LOGGER = LoggerFactory.getLogger(JsonConfigurationReader.class);
+
   private ConfigNode rootNode;
 
-  private JsonConfigurationReader(String json) throws IOException {
-    this(new FactoryHelper(), json);
+  private JsonConfigurationReader(String json, Predicate<String> sections) throws IOException {
+    this(new FactoryHelper(), json, sections);
   }
 
   JsonConfigurationReader(FactoryHelper helperFactory, String json) throws IOException {
-    rootNode = JsonConfigNode.createInstance(helperFactory.getJsonMapper().readTree(json));
+    this(helperFactory, json, section -> true);
+  }
+
+  /**
+   * Json is read token by token, no jackson tree is built. Long strings are not copied, they are
+   * decoded from json text when asked for.
+   */
+  JsonConfigurationReader(FactoryHelper helperFactory, String json, Predicate<String> sections)
+      throws IOException {
+    rootNode = JsonConfigNode.createInstance(
+        JsonConfigIndex.parse(helperFactory.getJsonMapper().getFactory(), json, sections));
+  }
+
+  /**
+   * Index is restored from binary snapshot if it was built from the same json and sections,
+   * otherwise json is parsed and snapshot is (re)written.
+   */
+  JsonConfigurationReader(FactoryHelper helperFactory, String json, Set<String> sections,
+                          Path snapshot) throws IOException {
+    JsonFactory factory = helperFactory.getJsonMapper().getFactory();
+    Optional<JsonConfigIndex> restored =
+        JsonConfigSnapshot.read(factory, json, sections, snapshot);
+    JsonConfigIndex index;
+    if (restored.isPresent()) {
+      index = restored.get();
+    } else {
+      index = JsonConfigIndex.parse(factory, json, sections::contains);
+      try {
+        JsonConfigSnapshot.write(index, json, sections, snapshot);
+      } catch (IOException e) {
+        LOGGER.warn("Can't write configuration snapshot " + snapshot, e);
+      }
+    }
+    rootNode = JsonConfigNode.createInstance(index);
   }
 
   public static JsonConfigurationReader getReader(String json) throws IOException {
     Preconditions.checkNotNull(json);
-    return new JsonConfigurationReader(json);
+    return new JsonConfigurationReader(json, section -> true);
+  }
+
+  /**
+   * Creates reader that keeps only given sections (fields of root object) of configuration.
+   *
+   * @param json configuration serialized to json
+   * @param sections names of sections to read, others are skipped
+   * @return reader of configuration
+   * @throws IOException when json is malformed
+   */
+  public static JsonConfigurationReader getReader(String json, Set<String> sections)
+      throws IOException {
+    Preconditions.checkNotNull(json);
+    return new JsonConfigurationReader(json, sections::contains);
+  }
+
+  /**
+   * Creates reader that keeps only given sections of configuration and uses binary snapshot
+   * file to avoid parsing the same json again (i.e. on next start of application).
+   *
+   * @param json configuration serialized to json
+   * @param sections names of sections to read, others are skipped
+   * @param snapshot snapshot file, created when missing or stale
+   * @return reader of configuration
+   * @throws IOException when json is malformed
+   */
+  public static JsonConfigurationReader getReader(String json, Set<String> sections,
+                                                  Path snapshot) throws IOException {
+    Preconditions.checkNotNull(json);
+    Preconditions.checkNotNull(snapshot);
+    return new JsonConfigurationReader(new FactoryHelper(), json, sections, snapshot);
   }
 
   static final class FactoryHelper {
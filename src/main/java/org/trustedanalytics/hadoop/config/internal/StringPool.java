@@ -0,0 +1,44 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.internal;
+
+import com.google.common.collect.Interner;
+import com.google.common.collect.Interners;
+
+/**
+ * Process-wide pool of names and values read from configuration.
+ *
+ * Hadoop property names and most of their values repeat in every service instance of a cluster
+ * and in every configuration read again (i.e. after reload), so a single copy of each is kept.
+ * Strings are referenced weakly, those no configuration uses anymore are collected.
+ */
+public final class StringPool {
+
+  private static final Interner<String> POOL = Interners.newWeakInterner();
+
+  private StringPool() {
+  }
+
+  /**
+   * Returns pooled string equal to given one.
+   *
+   * @param string string to pool, may be null
+   * @return canonical instance of the string, null for null
+   */
+  public static String intern(String string) {
+    return string == null ? null : POOL.intern(string);
+  }
+}
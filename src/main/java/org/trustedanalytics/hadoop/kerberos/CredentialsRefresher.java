@@ -0,0 +1,288 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.collect.MapMaker;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginException;
+
+/**
+ * Keeps kerberos credentials of subjects handed to hadoop clients fresh.
+ *
+ * Login manager registers, for every principal, how to log it in again. Subjects tracked for
+ * that principal (i.e. subjects of UGIs returned by {@link KrbLoginManager#getUGI(Subject)}) get
+ * a new TGT swapped into their private credentials before the current one expires. Subjects
+ * themselves are not replaced, so UGIs and RPC connections built on them stay valid.
+ *
+ * Subjects are referenced weakly. Once all subjects of a principal are collected, its
+ * registration is dropped at the next scheduled refresh and the relogin (with the secret it
+ * holds) is discarded, so principals that are not used anymore don't keep scheduled tasks.
+ */
+final class CredentialsRefresher {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(CredentialsRefresher.class);
+
+  static final String KRB5_RELOGIN_WINDOW = "hadoop.utils.krb5.relogin.window";
+
+  private static final double DEFAULT_RELOGIN_WINDOW = 0.8;
+
+  private static final long MIN_RELOGIN_DELAY_MS = TimeUnit.MINUTES.toMillis(1);
+
+  private static final String TGT_SERVER_PREFIX = "krbtgt/";
+
+  private static volatile CredentialsRefresher instance;
+
+  private final ScheduledExecutorService scheduler;
+
+  private final double window;
+
+  private final long minDelayMs;
+
+  private final Map<String, Registration> registrations = new ConcurrentHashMap<>();
+
+  @VisibleForTesting
+  CredentialsRefresher(ScheduledExecutorService scheduler, double window, long minDelayMs) {
+    Preconditions.checkArgument(window > 0 && window < 1, "Relogin window has to be in (0, 1)");
+    this.scheduler = scheduler;
+    this.window = window;
+    this.minDelayMs = minDelayMs;
+  }
+
+  static CredentialsRefresher getInstance() {
+    if (instance == null) {
+      synchronized (CredentialsRefresher.class) {
+        if (instance == null) {
+          instance = new CredentialsRefresher(
+              Executors.newSingleThreadScheduledExecutor(
+                  new ThreadFactoryBuilder().setDaemon(true).setNameFormat("krb-relogin-%d")
+                      .build()),
+              Double.parseDouble(System.getProperty(KRB5_RELOGIN_WINDOW,
+                                                    Double.toString(DEFAULT_RELOGIN_WINDOW))),
+              MIN_RELOGIN_DELAY_MS);
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Registers (or replaces) the way fresh credentials of given principal are obtained.
+   *
+   * @param principal principal name
+   * @param relogin login that returns subject with fresh TGT
+   */
+  void register(String principal, Relogin relogin) {
+    Preconditions.checkNotNull(relogin, "Relogin can't be null!");
+    Relogin[] replaced = new Relogin[1];
+    registrations.compute(principal, (p, registration) -> {
+      Registration current = registration != null ? registration : new Registration();
+      synchronized (current) {
+        replaced[0] = current.relogin;
+        current.relogin = relogin;
+      }
+      return current;
+    });
+    if (replaced[0] != null && replaced[0] != relogin) {
+      replaced[0].discard();
+    }
+  }
+
+  /**
+   * Starts keeping TGT of given subject fresh. Does nothing if no relogin was registered for the
+   * principal. Subject is referenced weakly.
+   *
+   * @param principal principal name
+   * @param subject subject to refresh in place
+   */
+  void track(String principal, Subject subject) {
+    Registration registration = registrations.get(principal);
+    if (registration == null || subject == null) {
+      return;
+    }
+    synchronized (registration) {
+      if (registration.dropped) {
+        return;
+      }
+      registration.subjects.add(subject);
+      if (registration.next == null) {
+        findTgt(subject).ifPresent(tgt -> schedule(principal, registration, tgt));
+      }
+    }
+  }
+
+  /**
+   * Logs principal in again and swaps new TGT into all tracked subjects.
+   *
+   * @param principal principal name
+   */
+  @VisibleForTesting
+  void refresh(String principal) {
+    Registration registration = registrations.get(principal);
+    if (registration == null) {
+      return;
+    }
+    List<Subject> subjects;
+    Relogin relogin;
+    synchronized (registration) {
+      registration.next = null;
+      subjects = new ArrayList<>(registration.subjects);
+      relogin = registration.relogin;
+    }
+    if (subjects.isEmpty()) {
+      drop(principal, registration, relogin);
+      return;
+    }
+    try {
+      Optional<KerberosTicket> fresh = findTgt(relogin.login());
+      if (!fresh.isPresent()) {
+        throw new LoginException("No TGT found after relogin of " + principal);
+      }
+      subjects.forEach(subject -> replaceTgt(subject, fresh.get()));
+      LOGGER.info("Refreshed credentials of " + principal + " in " + subjects.size()
+                  + " subject(s), valid until " + fresh.get().getEndTime());
+      synchronized (registration) {
+        schedule(principal, registration, fresh.get());
+      }
+    } catch (LoginException | RuntimeException e) {
+      LOGGER.warn("Relogin of " + principal + " failed, retrying in " + minDelayMs + " ms", e);
+      synchronized (registration) {
+        registration.next = scheduler.schedule(() -> refresh(principal), minDelayMs,
+                                               TimeUnit.MILLISECONDS);
+      }
+    }
+  }
+
+  @VisibleForTesting
+  long delayOf(KerberosTicket tgt) {
+    long start = tgt.getStartTime() != null
+        ? tgt.getStartTime().getTime() : tgt.getAuthTime().getTime();
+    long refreshAt = start + (long) ((tgt.getEndTime().getTime() - start) * window);
+    return Math.max(refreshAt - System.currentTimeMillis(), minDelayMs);
+  }
+
+  static Optional<KerberosTicket> findTgt(Subject subject) {
+    synchronized (subject.getPrivateCredentials()) {
+      return subject.getPrivateCredentials(KerberosTicket.class).stream()
+          .filter(CredentialsRefresher::isTgt)
+          .findFirst();
+    }
+  }
+
+  /**
+   * Removes registration whose subjects were all collected, unless the principal was registered
+   * again in the meantime.
+   */
+  private void drop(String principal, Registration registration, Relogin relogin) {
+    boolean[] dropped = new boolean[1];
+    registrations.computeIfPresent(principal, (p, current) -> {
+      synchronized (current) {
+        if (current != registration || current.relogin != relogin
+            || current.subjects.iterator().hasNext()) {
+          return current;
+        }
+        current.dropped = true;
+        dropped[0] = true;
+        return null;
+      }
+    });
+    if (dropped[0]) {
+      relogin.discard();
+      LOGGER.debug("No subjects of " + principal + " left, relogin dropped");
+    }
+  }
+
+  private void schedule(String principal, Registration registration, KerberosTicket tgt) {
+    if (registration.next != null) {
+      registration.next.cancel(false);
+    }
+    registration.next = scheduler.schedule(() -> refresh(principal), delayOf(tgt),
+                                           TimeUnit.MILLISECONDS);
+  }
+
+  private static void replaceTgt(Subject subject, KerberosTicket fresh) {
+    Set<Object> credentials = subject.getPrivateCredentials();
+    try {
+      synchronized (credentials) {
+        credentials.removeIf(cred -> cred instanceof KerberosTicket
+                                     && isTgt((KerberosTicket) cred));
+        credentials.add(copyOf(fresh));
+      }
+    } catch (IllegalStateException e) {
+      LOGGER.warn("Can't refresh credentials of read-only subject: " + subject.getPrincipals());
+    }
+  }
+
+  private static boolean isTgt(KerberosTicket ticket) {
+    return ticket.getServer().getName().startsWith(TGT_SERVER_PREFIX);
+  }
+
+  /**
+   * Every subject gets its own copy, so logging out one of them (which destroys its tickets)
+   * doesn't affect the others.
+   */
+  private static KerberosTicket copyOf(KerberosTicket ticket) {
+    return new KerberosTicket(ticket.getEncoded(), ticket.getClient(), ticket.getServer(),
+                              ticket.getSessionKey().getEncoded(), ticket.getSessionKeyType(),
+                              ticket.getFlags(), ticket.getAuthTime(), ticket.getStartTime(),
+                              ticket.getEndTime(), ticket.getRenewTill(),
+                              ticket.getClientAddresses());
+  }
+
+  private static final class Registration {
+
+    private volatile Relogin relogin;
+
+    // weak keys of MapMaker are compared by identity, Subject's hashCode changes with credentials
+    private final Set<Subject> subjects =
+        Collections.newSetFromMap(new MapMaker().weakKeys().<Subject, Boolean>makeMap());
+
+    private ScheduledFuture<?> next;
+
+    private boolean dropped;
+  }
+
+  @FunctionalInterface
+  interface Relogin {
+    Subject login() throws LoginException;
+
+    /**
+     * Releases secrets held by the relogin. Called once it is replaced or dropped, it is not
+     * used afterwards.
+     */
+    default void discard() {
+    }
+  }
+}
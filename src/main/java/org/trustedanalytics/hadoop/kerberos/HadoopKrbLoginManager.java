@@ -34,6 +34,9 @@ import sun.security.krb5.internal.ccache.CredentialsCache;
 
 import java.io.File;
 import java.io.IOException;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.Map;
 
@@ -72,14 +75,21 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
   private static final String KERB_MODULE =
       "org.trustedanalytics.hadoop.kerberos.Oauth2KrbLoginModule";
 
-  private static final String KRB5_CREDENTIALS_CACHE_DIR = "/tmp/";
-
   private FactoryHelper helper;
 
-  HadoopKrbLoginManager(String kdc, String defaultRealm, FactoryHelper helper) {
+  private CredentialsRefresher refresher;
+
+  HadoopKrbLoginManager(String kdc, String defaultRealm, FactoryHelper helper,
+                        CredentialsRefresher refresher) {
     validateParams(kdc, defaultRealm);
     initKerberos(kdc, defaultRealm);
     this.helper = helper;
+    this.refresher = refresher;
+    TicketCacheStore.getInstance().scheduleCleanup();
+  }
+
+  HadoopKrbLoginManager(String kdc, String defaultRealm, FactoryHelper helper) {
+    this(kdc, defaultRealm, helper, CredentialsRefresher.getInstance());
   }
 
   HadoopKrbLoginManager(String kdc, String defaultRealm) {
@@ -93,6 +103,12 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
                                 "Default realm cannot be empty");
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * No relogin is registered, token is usually expired long before the ticket obtained with it,
+   * so credentials of the user are refreshed by logging in with a new token.
+   */
   @Override
   public Subject loginWithJWTtoken(JwtToken jwtToken) throws LoginException {
     String userId = jwtToken.getUserId();
@@ -104,20 +120,35 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
     return login(lc);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Credentials are obtained from KDC only once. They are stored in ticket cache, from which
+   * login module reads them into the Subject.
+   *
+   * Copy of the password is kept for relogin only while subjects of the user are in use, it is
+   * wiped when they are all collected or the user logs in again.
+   */
   @Override
   public Subject loginWithCredentials(String user, char[] password) throws LoginException {
     setKerbConfigFromOpts(user, getDefaultOptionsForPrincipal(user));
     LoginContext lc = helper.getLoginContext(user, new FixedPasswordHandler(password));
     helper.cacheKrbCredentials(user, password);
-    return login(lc);
+    return registerRelogin(login(lc), new PasswordRelogin(user, password.clone()));
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Credentials are obtained from KDC only once. They are stored in ticket cache, from which
+   * login module reads them into the Subject.
+   */
   @Override
   public Subject loginWithKeyTab(String user, String path) throws LoginException {
-    setKerbConfigFromOpts(user, getKeyTabOptionsForPrincipal(user, path));
+    setKerbConfigFromOpts(user, getDefaultOptionsForPrincipal(user));
     LoginContext lc = helper.getLoginContext(user);
     helper.cacheKrbCredentials(user, path);
-    return login(lc);
+    return registerRelogin(login(lc), () -> loginWithKeyTab(user, path));
   }
 
   @Override
@@ -133,10 +164,22 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
     UserGroupInformation.setConfiguration(hadoopConf);
   }
 
+  /**
+   * {@inheritDoc}
+   *
+   * Credentials of returned UGI are refreshed in place before they expire, if the subject was
+   * logged in by this manager.
+   */
   @Override
   public UserGroupInformation getUGI(Subject subject) throws IOException {
     Preconditions.checkNotNull(subject, "Subject can't be null!");
-    return UserGroupInformation.getBestUGI(ticketCacheLocation(subject), getPrincipalName(subject));
+    String principal = getPrincipalName(subject);
+    UserGroupInformation ugi =
+        UserGroupInformation.getBestUGI(ticketCacheLocation(subject), principal);
+    refresher.track(principal, subject);
+    refresher.track(principal, ugi.doAs(
+        (PrivilegedAction<Subject>) () -> Subject.getSubject(AccessController.getContext())));
+    return ugi;
   }
 
   static String getPrincipalName(Subject subject) {
@@ -156,13 +199,23 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
     return token.getUserId();
   }
 
+  /**
+   * Appends default realm to user name, unless it already carries a realm. Returned name is the
+   * one credentials cache of the user is stored under.
+   */
+  static String qualifiedPrincipalName(String user) {
+    Preconditions.checkNotNull(user, "User can't be null!");
+    return user.contains(PrincipalName.NAME_REALM_SEPARATOR_STR)
+        ? user
+        : user + PrincipalName.NAME_REALM_SEPARATOR_STR + System.getProperty(KRB5_REALM);
+  }
+
   static String ticketCacheLocation(Subject subject) {
     return ticketCacheLocation(getPrincipalName(subject));
   }
 
   static String ticketCacheLocation(String princName) {
-    return KRB5_CREDENTIALS_CACHE_DIR
-           + princName.replace(PrincipalName.NAME_COMPONENT_SEPARATOR, '_');
+    return TicketCacheStore.getInstance().location(princName);
   }
 
   private void initKerberos(String kdc, String defaultRealm) {
@@ -172,18 +225,26 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
     Configuration.setConfiguration(InMemoryMultiuserJaasConfiguration.getInstance());
   }
 
-  private static Map<String, String> getKeyTabOptionsForPrincipal(String user, String path) {
-    Map<String, String> opts = getDefaultOptionsForPrincipal(user);
-    opts.put("keyTab", path);
-    opts.put("useKeyTab", "true");
-    return opts;
-  }
-
   private Subject login(LoginContext lc) throws LoginException {
     lc.login();
     return lc.getSubject();
   }
 
+  /**
+   * Registers relogin of the principal and tracks the logged in subject, so that the relogin is
+   * dropped once the subject and all UGIs built on it are collected.
+   */
+  private Subject registerRelogin(Subject subject, CredentialsRefresher.Relogin relogin) {
+    if (subject != null && !subject.getPrincipals().isEmpty()) {
+      String principal = getPrincipalName(subject);
+      refresher.register(principal, relogin);
+      refresher.track(principal, subject);
+    } else {
+      relogin.discard();
+    }
+    return subject;
+  }
+
   public void setKerbConfigFromOpts(String username, Map<String, String> opts) {
     AppConfigurationEntry[] appConfigurationEntry =
         new AppConfigurationEntry[]{new AppConfigurationEntry(KERB_MODULE,
@@ -194,23 +255,48 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
     conf.append(username, appConfigurationEntry);
   }
 
+  /**
+   * Login module options that make it read credentials from ticket cache only. Login module
+   * won't fall back to its own AS exchange, when credentials are not found in the cache.
+   */
   private static Map<String, String> getDefaultOptionsForPrincipal(String user) {
     Map<String, String> options = new HashMap<>();
     LOGGER.debug("Using principal name : " + user);
     options.put("principal", user);
     options.put("storeKey", "false");
-    options.put("doNotPrompt", "false");
+    options.put("doNotPrompt", "true");
     options.put("useTicketCache", "true");
     options.put("renewTGT", "true");
     options.put("refreshKrb5Config", "true");
     options.put("isInitiator", "true");
     options.put("clearPass", "false");
-    options.put("ticketCache", ticketCacheLocation(user + PrincipalName.NAME_REALM_SEPARATOR_STR
-                               + System.getProperty(KRB5_REALM)));
+    options.put("ticketCache", ticketCacheLocation(qualifiedPrincipalName(user)));
     options.put("debug", "true");
     return options;
   }
 
+  private final class PasswordRelogin implements CredentialsRefresher.Relogin {
+
+    private final String user;
+
+    private final char[] password;
+
+    private PasswordRelogin(String user, char[] password) {
+      this.user = user;
+      this.password = password;
+    }
+
+    @Override
+    public Subject login() throws LoginException {
+      return loginWithCredentials(user, password);
+    }
+
+    @Override
+    public void discard() {
+      Arrays.fill(password, '\0');
+    }
+  }
+
   static final class FixedPasswordHandler implements CallbackHandler {
 
     private final char[] password;
@@ -281,8 +367,7 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
                                                     + PrincipalName.NAME_COMPONENT_SEPARATOR_STR
                                                     + System.getProperty(KRB5_REALM),
                                                     PrincipalName.KRB_NT_SRV_INST);
-      String cCacheLocation = "FILE:"
-                              + ticketCacheLocation(pName.getName());
+      String cCacheLocation = ticketCacheLocation(pName.getName());
 
       KDCOptions kdcOptions = new KDCOptions();
       kdcOptions.set(KDCOptions.FORWARDABLE, true);
@@ -295,13 +380,15 @@ final class HadoopKrbLoginManager implements KrbLoginManager {
 
       Credentials cCreds = builder.getCCreds();
       builder.destroy();
-      CredentialsCache cc = CredentialsCache.getInstance(pName, cCacheLocation);
-      if (cc == null) {
-        LOGGER.debug("Creating new credentials cache file: " + cCacheLocation);
-        cc = CredentialsCache.create(pName, cCacheLocation);
-      }
-      cc.update(cCreds);
-      cc.save();
+      TicketCacheStore.getInstance().<KrbException>update(cCacheLocation, tempLocation -> {
+        LOGGER.debug("Writing credentials cache file: " + cCacheLocation);
+        CredentialsCache cc = CredentialsCache.create(pName, tempLocation);
+        if (cc == null) {
+          throw new IOException("Can't create credentials cache file: " + tempLocation);
+        }
+        cc.update(cCreds);
+        cc.save();
+      });
     }
   }
 }
\ No newline at end of file
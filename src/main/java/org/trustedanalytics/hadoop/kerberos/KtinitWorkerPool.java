@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.CharMatcher;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Strings;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.OutputStreamWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+import javax.security.auth.login.LoginException;
+
+/**
+ * Pool of long-lived ktinit helper processes, used instead of forking new ktinit for every
+ * login.
+ *
+ * Helper reads requests from its standard input and writes responses to its standard output,
+ * one line each:
+ * <pre>
+ *   KTINIT &lt;token&gt; &lt;principal&gt; &lt;ccache&gt;   -&gt;   OK | ERR &lt;message&gt;
+ *   PING                                      -&gt;   PONG
+ * </pre>
+ * Fields are separated by single spaces, so arguments containing whitespace are rejected
+ * before they reach the helper. Crashed helpers are restarted, helpers idle for a while are
+ * health checked before use and helpers that do not answer within the request timeout are killed
+ * and replaced. Shared pools are closed, with their helpers, when JVM shuts down.
+ */
+final class KtinitWorkerPool implements Closeable {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(KtinitWorkerPool.class);
+
+  static final String KTINIT_WORKER_COMMAND = "hadoop.utils.ktinit.worker.command";
+
+  static final String KTINIT_WORKER_POOL_SIZE = "hadoop.utils.ktinit.worker.pool.size";
+
+  static final String KTINIT_WORKER_TIMEOUT = "hadoop.utils.ktinit.worker.timeout";
+
+  private static final int DEFAULT_POOL_SIZE = 2;
+
+  private static final long DEFAULT_TIMEOUT_SEC = 30;
+
+  private static final long HEALTH_CHECK_AFTER_IDLE_MS = TimeUnit.SECONDS.toMillis(30);
+
+  private static final Map<String, KtinitWorkerPool> POOLS = new ConcurrentHashMap<>();
+
+  static {
+    Runtime.getRuntime().addShutdownHook(
+        new Thread(KtinitWorkerPool::closeAll, "ktinit-worker-shutdown"));
+  }
+
+  private final long timeoutMs;
+
+  private final BlockingQueue<Worker> idle;
+
+  private final List<Worker> workers = new ArrayList<>();
+
+  private volatile boolean closed;
+
+  @VisibleForTesting
+  KtinitWorkerPool(String command, int size, long timeoutMs) {
+    Preconditions.checkArgument(!Strings.isNullOrEmpty(command),
+                                "ktinit worker command can't be empty");
+    Preconditions.checkArgument(size > 0, "ktinit worker pool size has to be positive");
+    this.timeoutMs = timeoutMs;
+    this.idle = new ArrayBlockingQueue<>(size);
+    for (int i = 0; i < size; i++) {
+      Worker worker = new Worker(command);
+      workers.add(worker);
+      idle.add(worker);
+    }
+  }
+
+  /**
+   * Returns pool shared by all logins, that use given helper command.
+   *
+   * @param command ktinit helper command
+   * @return pool of helper processes
+   */
+  static KtinitWorkerPool forCommand(String command) {
+    return POOLS.computeIfAbsent(command, cmd ->
+        new KtinitWorkerPool(cmd,
+                             Integer.getInteger(KTINIT_WORKER_POOL_SIZE, DEFAULT_POOL_SIZE),
+                             TimeUnit.SECONDS.toMillis(
+                                 Long.getLong(KTINIT_WORKER_TIMEOUT, DEFAULT_TIMEOUT_SEC))));
+  }
+
+  /**
+   * Closes all shared pools and stops their helpers.
+   */
+  @VisibleForTesting
+  static void closeAll() {
+    for (String command : POOLS.keySet()) {
+      KtinitWorkerPool pool = POOLS.remove(command);
+      if (pool != null) {
+        pool.close();
+      }
+    }
+  }
+
+  /**
+   * Creates kerberos credentials cache based on Oauth2 token.
+   *
+   * @param token raw oauth2 token
+   * @param principal principal name
+   * @param ccache credentials cache location
+   * @throws LoginException when helper failed or did not answer in time, or when any argument
+   *     is empty or contains whitespace
+   */
+  void ktinit(String token, String principal, String ccache) throws LoginException {
+    checkField("token", token);
+    checkField("principal", principal);
+    checkField("ccache", ccache);
+    Worker worker = acquire();
+    try {
+      String response = worker.call(String.join(" ", "KTINIT", token, principal, ccache),
+                                    timeoutMs);
+      if (!"OK".equals(response)) {
+        throw new LoginException("ktinit execution failed: \n" + response);
+      }
+    } catch (IOException e) {
+      throw loginException(e);
+    } finally {
+      release(worker);
+    }
+  }
+
+  @Override
+  public void close() {
+    closed = true;
+    workers.forEach(Worker::stop);
+  }
+
+  @VisibleForTesting
+  List<Worker> getWorkers() {
+    return workers;
+  }
+
+  private Worker acquire() throws LoginException {
+    Preconditions.checkState(!closed, "ktinit worker pool is closed");
+    Worker worker;
+    try {
+      worker = idle.poll(timeoutMs, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      throw loginException(e);
+    }
+    if (worker == null) {
+      throw new LoginException("No ktinit worker available within " + timeoutMs + " ms");
+    }
+    try {
+      worker.ensureHealthy(timeoutMs);
+    } catch (IOException e) {
+      release(worker);
+      throw loginException(e);
+    }
+    return worker;
+  }
+
+  private void release(Worker worker) {
+    if (closed) {
+      worker.stop();
+    }
+    idle.offer(worker);
+  }
+
+  private static void checkField(String name, String value) throws LoginException {
+    if (Strings.isNullOrEmpty(value) || CharMatcher.WHITESPACE.matchesAnyOf(value)) {
+      throw new LoginException("ktinit worker can't be passed empty " + name
+                               + " or one containing whitespace");
+    }
+  }
+
+  private static LoginException loginException(Exception cause) {
+    LoginException propagate = new LoginException(cause.getMessage());
+    propagate.initCause(cause);
+    return propagate;
+  }
+
+  /**
+   * Single helper process. Not thread safe, pool hands it out to one caller at a time.
+   */
+  static final class Worker {
+
+    private static final String EOF = "\u0000EOF";
+
+    private final String[] command;
+
+    private Process process;
+
+    private BufferedWriter requests;
+
+    private BlockingQueue<String> responses;
+
+    private long lastUsed;
+
+    Worker(String command) {
+      this.command = command.trim().split("\\s+");
+    }
+
+    void ensureHealthy(long timeoutMs) throws IOException {
+      Process current = process;
+      if (current == null || !current.isAlive()) {
+        if (current != null) {
+          LOGGER.warn("ktinit worker exited with code " + current.exitValue() + ", restarting");
+        }
+        start();
+      } else if (System.currentTimeMillis() - lastUsed > HEALTH_CHECK_AFTER_IDLE_MS) {
+        try {
+          if (!"PONG".equals(call("PING", timeoutMs))) {
+            LOGGER.warn("ktinit worker failed health check, restarting");
+            start();
+          }
+        } catch (IOException e) {
+          LOGGER.warn("ktinit worker failed health check, restarting", e);
+          start();
+        }
+      }
+    }
+
+    String call(String request, long timeoutMs) throws IOException {
+      responses.clear();
+      requests.write(request);
+      requests.newLine();
+      requests.flush();
+      String response;
+      try {
+        response = responses.poll(timeoutMs, TimeUnit.MILLISECONDS);
+      } catch (InterruptedException e) {
+        Thread.currentThread().interrupt();
+        stop();
+        throw new InterruptedIOException("Interrupted while waiting for ktinit worker");
+      }
+      if (response == null) {
+        stop();
+        throw new IOException("ktinit worker did not respond within " + timeoutMs + " ms");
+      }
+      if (EOF.equals(response)) {
+        stop();
+        throw new IOException("ktinit worker exited unexpectedly");
+      }
+      lastUsed = System.currentTimeMillis();
+      return response;
+    }
+
+    void stop() {
+      if (process != null) {
+        ProcessRunner.destroyTree(process);
+        process = null;
+      }
+    }
+
+    @VisibleForTesting
+    Process getProcess() {
+      return process;
+    }
+
+    private void start() throws IOException {
+      stop();
+      Process started = new ProcessBuilder(command).start();
+      BlockingQueue<String> out = new LinkedBlockingQueue<>();
+      drain(started.getInputStream(), out::add, () -> out.add(EOF), "stdout");
+      drain(started.getErrorStream(), LOGGER::warn, () -> { }, "stderr");
+      this.requests = new BufferedWriter(
+          new OutputStreamWriter(started.getOutputStream(), StandardCharsets.UTF_8));
+      this.responses = out;
+      this.process = started;
+      this.lastUsed = System.currentTimeMillis();
+    }
+
+    private void drain(InputStream stream, Consumer<String> consumer, Runnable onEof,
+                       String name) {
+      Thread drainer = new Thread(() -> {
+        try (BufferedReader reader =
+                 new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+          reader.lines().forEach(consumer);
+        } catch (IOException | RuntimeException e) {
+          LOGGER.debug("ktinit worker " + name + " closed", e);
+        } finally {
+          onEof.run();
+        }
+      }, "ktinit-worker-" + name);
+      drainer.setDaemon(true);
+      drainer.start();
+    }
+  }
+}
@@ -22,7 +22,6 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
 import org.trustedanalytics.hadoop.config.client.oauth.TapOauthToken;
-import sun.security.krb5.PrincipalName;
 
 import javax.security.auth.Subject;
 import javax.security.auth.callback.Callback;
@@ -30,17 +29,13 @@ import javax.security.auth.callback.CallbackHandler;
 import javax.security.auth.callback.UnsupportedCallbackException;
 import javax.security.auth.login.LoginException;
 import javax.security.auth.spi.LoginModule;
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
 import java.nio.file.Files;
 import java.nio.file.Paths;
 import java.util.Map;
 import java.util.Optional;
 import java.util.function.Supplier;
 
-import static java.nio.file.Files.exists;
-
 public final class Oauth2KrbLoginModule implements LoginModule {
 
   private static final Logger LOGGER = LoggerFactory.getLogger(Oauth2KrbLoginModule.class);
@@ -51,6 +46,8 @@ public final class Oauth2KrbLoginModule implements LoginModule {
 
   private String ktinit;
 
+  private String ktinitWorker;
+
   public Oauth2KrbLoginModule() {
     delegate = new Krb5LoginModule();
   }
@@ -69,7 +66,8 @@ public final class Oauth2KrbLoginModule implements LoginModule {
 
         this.ktinit  = ConfigOptions.KTINIT_COMMAND.asString(options)
             .orElse(getKtinit());
-
+        this.ktinitWorker = ConfigOptions.KTINIT_WORKER_COMMAND.asString(options)
+            .orElse(System.getProperty(KtinitWorkerPool.KTINIT_WORKER_COMMAND));
 
         prepareKrbCCache(tapToken);
         optionsToDelegee = prepareOptionsForDelegation(tapToken, options);
@@ -120,30 +118,33 @@ public final class Oauth2KrbLoginModule implements LoginModule {
    */
   synchronized void prepareKrbCCache(JwtToken jwtToken) throws LoginException {
     Preconditions.checkNotNull(ticketCache, "Ticket cache location not set!");
-    String kinitCmd = String.format("%s -t %s -c %s -P %s",
-                                    this.ktinit,
-                                    jwtToken.getRawToken(),
-                                    ticketCache,
-                                    getPrincipalName(jwtToken));
-    Runtime run = Runtime.getRuntime();
     try {
-      Process pr = run.exec(kinitCmd);
-      pr.waitFor();
-      try (BufferedReader buf = new BufferedReader(new InputStreamReader(pr.getInputStream()))) {
-        buf.lines().forEach(LOGGER::info);
-      }
-      if (pr.exitValue() != 0) {
-        try(BufferedReader err = new BufferedReader(new InputStreamReader(pr.getErrorStream()))) {
-          StringBuilder toLog = new StringBuilder("ktinit execution failed: \n");
-          err.lines().forEach(line -> toLog.append(line).append("\n"));
-          throw new LoginException(toLog.toString());
-        }
-      }
-      if(!exists(Paths.get(ticketCache))) {
-        throw new LoginException("Failed to create krb credential cache in location: "
-                                 + ticketCache);
+      TicketCacheStore.getInstance().update(ticketCache, ccache -> runKtinit(jwtToken, ccache));
+    } catch (IOException e) {
+      LoginException propagate = new LoginException(e.getMessage());
+      propagate.initCause(e);
+      throw propagate;
+    }
+  }
+
+  private void runKtinit(JwtToken jwtToken, String ccache) throws LoginException {
+    if (this.ktinitWorker != null) {
+      KtinitWorkerPool.forCommand(this.ktinitWorker)
+          .ktinit(jwtToken.getRawToken(), getPrincipalName(jwtToken), ccache);
+      return;
+    }
+    try {
+      ProcessRunner.Result result = ProcessRunner.forKtinit().run(this.ktinit,
+                                                                 "-t", jwtToken.getRawToken(),
+                                                                 "-c", ccache,
+                                                                 "-P", getPrincipalName(jwtToken));
+      result.getStdout().forEach(LOGGER::info);
+      if (result.getExitCode() != 0) {
+        StringBuilder toLog = new StringBuilder("ktinit execution failed: \n");
+        result.getStderr().forEach(line -> toLog.append(line).append("\n"));
+        throw new LoginException(toLog.toString());
       }
-    } catch (IOException | InterruptedException e) {
+    } catch (IOException e) {
       LoginException propagate = new LoginException(e.getMessage());
       propagate.initCause(e);
       throw propagate;
@@ -167,9 +168,7 @@ public final class Oauth2KrbLoginModule implements LoginModule {
 
   String getPrincipalName(JwtToken token) {
     Preconditions.checkNotNull(token);
-    return token.getUserId()
-           + PrincipalName.NAME_REALM_SEPARATOR_STR
-           + System.getProperty(HadoopKrbLoginManager.KRB5_REALM);
+    return HadoopKrbLoginManager.qualifiedPrincipalName(token.getUserId());
   }
 
   /**
@@ -203,7 +202,8 @@ public final class Oauth2KrbLoginModule implements LoginModule {
     USE_TOKEN("useToken"),
     TOKEN_CACHE("tokenCache"),
     TICKET_CACHE("ticketCache"),
-    KTINIT_COMMAND("ktinitCommand");
+    KTINIT_COMMAND("ktinitCommand"),
+    KTINIT_WORKER_COMMAND("ktinitWorkerCommand");
 
     private String name;
 
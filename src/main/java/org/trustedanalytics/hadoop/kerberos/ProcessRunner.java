@@ -0,0 +1,326 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.base.Throwables;
+import com.google.common.collect.ImmutableMap;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.InterruptedIOException;
+import java.io.UncheckedIOException;
+import java.lang.invoke.MethodHandle;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.lang.reflect.Field;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.OptionalLong;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.Collectors;
+
+/**
+ * Runs external commands (i.e. ktinit) with a deadline.
+ *
+ * Standard output and error are drained concurrently while the process runs, so a chatty command
+ * can't block on a full pipe. When the deadline passes, the process together with all of its
+ * descendants is killed. Every run is recorded in {@link #metrics()}.
+ */
+final class ProcessRunner {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(ProcessRunner.class);
+
+  static final String KTINIT_TIMEOUT = "hadoop.utils.ktinit.timeout";
+
+  private static final long DEFAULT_TIMEOUT_SEC = 30;
+
+  private static final long KILL_WAIT_MS = 1000;
+
+  private static final ExecutorService DRAINERS = Executors.newCachedThreadPool(
+      new ThreadFactoryBuilder().setDaemon(true).setNameFormat("process-drainer-%d").build());
+
+  private static final Metrics METRICS = new Metrics();
+
+  // Process.pid() exists since Java 9, on Java 8 pid is read from private field of UNIXProcess
+  private static final Optional<MethodHandle> PROCESS_PID = findPidMethod();
+
+  private final long timeoutMs;
+
+  @VisibleForTesting
+  ProcessRunner(long timeoutMs) {
+    Preconditions.checkArgument(timeoutMs > 0, "Process timeout has to be positive");
+    this.timeoutMs = timeoutMs;
+  }
+
+  /**
+   * Returns runner with deadline taken from {@link #KTINIT_TIMEOUT} system property (seconds).
+   */
+  static ProcessRunner forKtinit() {
+    return new ProcessRunner(
+        TimeUnit.SECONDS.toMillis(Long.getLong(KTINIT_TIMEOUT, DEFAULT_TIMEOUT_SEC)));
+  }
+
+  static Metrics metrics() {
+    return METRICS;
+  }
+
+  /**
+   * Executes command and waits until it exits or the deadline passes.
+   *
+   * @param command command with its arguments
+   * @return exit code and collected output of the process
+   * @throws IOException when process can't be started, its output can't be read or it did not
+   *                     finish before the deadline
+   */
+  Result run(String... command) throws IOException {
+    Preconditions.checkArgument(command.length > 0, "Command can't be empty");
+    long start = System.nanoTime();
+    Process process;
+    try {
+      process = new ProcessBuilder(command).start();
+    } catch (IOException e) {
+      METRICS.execFailures.increment();
+      throw e;
+    }
+    METRICS.execs.increment();
+    METRICS.execNanos.add(System.nanoTime() - start);
+    process.getOutputStream().close();
+
+    CompletableFuture<List<String>> stdout = drain(process.getInputStream());
+    CompletableFuture<List<String>> stderr = drain(process.getErrorStream());
+    try {
+      if (!process.waitFor(timeoutMs, TimeUnit.MILLISECONDS)) {
+        METRICS.timeouts.increment();
+        destroyTree(process);
+        throw new IOException(command[0] + " did not finish within " + timeoutMs + " ms");
+      }
+      long deadline = start + TimeUnit.MILLISECONDS.toNanos(timeoutMs);
+      Result result = new Result(process.exitValue(),
+                                 collect(stdout, deadline), collect(stderr, deadline));
+      METRICS.recordExit(result.getExitCode());
+      return result;
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      destroyTree(process);
+      throw new InterruptedIOException("Interrupted while waiting for " + command[0]);
+    } finally {
+      METRICS.runNanos.add(System.nanoTime() - start);
+    }
+  }
+
+  /**
+   * Forcibly kills process and all of its descendants. Descendants are looked up with
+   * {@code pgrep}, when it is not available or pid of the process can't be determined (logged as
+   * warning) only the process itself is killed.
+   *
+   * @param process process to kill
+   */
+  static void destroyTree(Process process) {
+    OptionalLong processPid = pidOf(process);
+    List<Long> descendants = processPid.isPresent()
+        ? descendantsOf(processPid.getAsLong())
+        : Collections.emptyList();
+    process.destroyForcibly();
+    if (!descendants.isEmpty()) {
+      List<String> kill = new ArrayList<>(Arrays.asList("kill", "-KILL"));
+      descendants.forEach(pid -> kill.add(pid.toString()));
+      runQuietly(kill.toArray(new String[kill.size()]));
+    }
+  }
+
+  private static List<Long> descendantsOf(long pid) {
+    List<Long> result = new ArrayList<>();
+    for (String child : runQuietly("pgrep", "-P", Long.toString(pid))) {
+      try {
+        long childPid = Long.parseLong(child.trim());
+        result.add(childPid);
+        result.addAll(descendantsOf(childPid));
+      } catch (NumberFormatException ignore) {
+        LOGGER.debug("Unexpected pgrep output: " + child);
+      }
+    }
+    return result;
+  }
+
+  @VisibleForTesting
+  static OptionalLong pidOf(Process process) {
+    try {
+      if (PROCESS_PID.isPresent()) {
+        return OptionalLong.of((long) PROCESS_PID.get().invokeExact(process));
+      }
+      Field pid = process.getClass().getDeclaredField("pid");
+      pid.setAccessible(true);
+      return OptionalLong.of(pid.getLong(process));
+    } catch (ReflectiveOperationException | RuntimeException e) {
+      LOGGER.warn("Can't determine pid of " + process + ", its descendants won't be killed", e);
+      return OptionalLong.empty();
+    } catch (Throwable e) {
+      throw Throwables.propagate(e);
+    }
+  }
+
+  private static Optional<MethodHandle> findPidMethod() {
+    try {
+      return Optional.of(MethodHandles.publicLookup()
+                             .findVirtual(Process.class, "pid", MethodType.methodType(long.class)));
+    } catch (NoSuchMethodException | IllegalAccessException e) {
+      return Optional.empty();
+    }
+  }
+
+  private static List<String> runQuietly(String... command) {
+    try {
+      Process process = new ProcessBuilder(command).redirectErrorStream(true).start();
+      CompletableFuture<List<String>> out = drain(process.getInputStream());
+      if (!process.waitFor(KILL_WAIT_MS, TimeUnit.MILLISECONDS)) {
+        process.destroyForcibly();
+        return Collections.emptyList();
+      }
+      return out.get(KILL_WAIT_MS, TimeUnit.MILLISECONDS);
+    } catch (InterruptedException e) {
+      Thread.currentThread().interrupt();
+      return Collections.emptyList();
+    } catch (IOException | ExecutionException | TimeoutException e) {
+      LOGGER.debug("Can't run " + command[0], e);
+      return Collections.emptyList();
+    }
+  }
+
+  private static CompletableFuture<List<String>> drain(InputStream stream) {
+    return CompletableFuture.supplyAsync(() -> {
+      try (BufferedReader reader =
+               new BufferedReader(new InputStreamReader(stream, StandardCharsets.UTF_8))) {
+        return reader.lines().collect(Collectors.toList());
+      } catch (IOException e) {
+        throw new UncheckedIOException(e);
+      }
+    }, DRAINERS);
+  }
+
+  private static List<String> collect(CompletableFuture<List<String>> output, long deadline)
+      throws IOException, InterruptedException {
+    try {
+      return output.get(Math.max(deadline - System.nanoTime(), KILL_WAIT_MS),
+                        TimeUnit.NANOSECONDS);
+    } catch (ExecutionException e) {
+      throw new IOException("Can't read process output", e.getCause());
+    } catch (TimeoutException e) {
+      // process exited, but some descendant still holds its output open
+      throw new IOException("Process output not closed within deadline", e);
+    }
+  }
+
+  static final class Result {
+
+    private final int exitCode;
+
+    private final List<String> stdout;
+
+    private final List<String> stderr;
+
+    Result(int exitCode, List<String> stdout, List<String> stderr) {
+      this.exitCode = exitCode;
+      this.stdout = stdout;
+      this.stderr = stderr;
+    }
+
+    int getExitCode() {
+      return exitCode;
+    }
+
+    List<String> getStdout() {
+      return stdout;
+    }
+
+    List<String> getStderr() {
+      return stderr;
+    }
+  }
+
+  /**
+   * Counters of processes run since class was loaded.
+   */
+  static final class Metrics {
+
+    private final LongAdder execs = new LongAdder();
+
+    private final LongAdder execFailures = new LongAdder();
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder execNanos = new LongAdder();
+
+    private final LongAdder runNanos = new LongAdder();
+
+    private final Map<Integer, LongAdder> exits = new ConcurrentHashMap<>();
+
+    /** Number of successfully started processes. */
+    long getExecs() {
+      return execs.sum();
+    }
+
+    /** Number of processes that could not be started. */
+    long getExecFailures() {
+      return execFailures.sum();
+    }
+
+    /** Number of processes killed because of deadline. */
+    long getTimeouts() {
+      return timeouts.sum();
+    }
+
+    /** Total time spent on starting processes. */
+    long getExecTime(TimeUnit unit) {
+      return unit.convert(execNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Total time from start of process to its exit (or kill). */
+    long getRunTime(TimeUnit unit) {
+      return unit.convert(runNanos.sum(), TimeUnit.NANOSECONDS);
+    }
+
+    /** Number of finished processes by exit code. */
+    Map<Integer, Long> getExits() {
+      ImmutableMap.Builder<Integer, Long> snapshot = ImmutableMap.builder();
+      exits.forEach((code, count) -> snapshot.put(code, count.sum()));
+      return snapshot.build();
+    }
+
+    private void recordExit(int exitCode) {
+      exits.computeIfAbsent(exitCode, code -> new LongAdder()).increment();
+    }
+  }
+}
@@ -0,0 +1,264 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import com.google.common.annotations.VisibleForTesting;
+import com.google.common.base.Preconditions;
+import com.google.common.util.concurrent.ThreadFactoryBuilder;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import sun.security.krb5.PrincipalName;
+import sun.security.krb5.internal.ccache.Credentials;
+import sun.security.krb5.internal.ccache.CredentialsCache;
+
+import java.io.IOException;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.NoSuchFileException;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Predicate;
+
+/**
+ * Keeps kerberos credential caches of all principals logged in by this library.
+ *
+ * Caches are spread over hash-sharded subdirectories of a configurable base directory
+ * ({@link #KRB5_CCACHE_DIR} system property), so it can be placed on tmpfs. Every update is
+ * written to a temporary file and atomically renamed over the previous cache, hence readers never
+ * see a half-written file. Expired caches are periodically removed.
+ */
+final class TicketCacheStore {
+
+  private static final Logger LOGGER = LoggerFactory.getLogger(TicketCacheStore.class);
+
+  static final String KRB5_CCACHE_DIR = "hadoop.utils.krb5.ccache.dir";
+
+  static final String KRB5_CCACHE_CLEANUP_INTERVAL = "hadoop.utils.krb5.ccache.cleanup.interval";
+
+  private static final String DEFAULT_CCACHE_DIR = "/tmp/krb5cc";
+
+  private static final long DEFAULT_CLEANUP_INTERVAL_SEC = TimeUnit.HOURS.toSeconds(1);
+
+  private static final int SHARDS = 256;
+
+  private static final String TEMP_PREFIX = ".";
+
+  private static final String TEMP_SUFFIX = ".tmp";
+
+  private static volatile TicketCacheStore instance;
+
+  private final Path baseDir;
+
+  private final long cleanupIntervalSec;
+
+  private final Set<Path> knownShards = ConcurrentHashMap.newKeySet();
+
+  private ScheduledExecutorService cleaner;
+
+  @VisibleForTesting
+  TicketCacheStore(Path baseDir, long cleanupIntervalSec) {
+    this.baseDir = Preconditions.checkNotNull(baseDir, "Base directory can't be null!");
+    this.cleanupIntervalSec = cleanupIntervalSec;
+  }
+
+  static TicketCacheStore getInstance() {
+    if (instance == null) {
+      synchronized (TicketCacheStore.class) {
+        if (instance == null) {
+          instance = new TicketCacheStore(
+              Paths.get(System.getProperty(KRB5_CCACHE_DIR, DEFAULT_CCACHE_DIR)),
+              Long.getLong(KRB5_CCACHE_CLEANUP_INTERVAL, DEFAULT_CLEANUP_INTERVAL_SEC));
+        }
+      }
+    }
+    return instance;
+  }
+
+  /**
+   * Returns credential cache location for given principal. Shard directory is created if needed.
+   *
+   * @param princName principal name
+   * @return absolute path to credential cache file
+   */
+  String location(String princName) {
+    Preconditions.checkNotNull(princName, "Principal name can't be null!");
+    String fileName = princName.replace(PrincipalName.NAME_COMPONENT_SEPARATOR, '_');
+    Path shard = baseDir.resolve(shardOf(fileName));
+    ensureDirectory(shard);
+    return shard.resolve(fileName).toString();
+  }
+
+  /**
+   * Writes new content of credential cache. Content is produced by writer in a temporary file
+   * placed next to target location, which then atomically replaces the target.
+   *
+   * @param location credential cache location
+   * @param writer logic that fills a credential cache under the given temporary location
+   * @throws IOException when content can't be written or moved into place
+   */
+  <E extends Exception> void update(String location, CacheWriter<E> writer) throws E, IOException {
+    Path target = Paths.get(location);
+    Path temp = tempFor(target);
+    try {
+      writer.write(temp.toString());
+      if (!Files.exists(temp)) {
+        throw new IOException("Failed to create krb credential cache in location: " + location);
+      }
+      commit(temp, target);
+    } finally {
+      Files.deleteIfExists(temp);
+    }
+  }
+
+  /**
+   * Starts periodic removal of expired credential caches. Calling it more than once has no
+   * effect.
+   */
+  synchronized void scheduleCleanup() {
+    if (cleaner == null && cleanupIntervalSec > 0) {
+      cleaner = Executors.newSingleThreadScheduledExecutor(
+          new ThreadFactoryBuilder().setDaemon(true).setNameFormat("ccache-cleaner-%d").build());
+      cleaner.scheduleWithFixedDelay(this::cleanupQuietly, cleanupIntervalSec, cleanupIntervalSec,
+                                     TimeUnit.SECONDS);
+    }
+  }
+
+  /**
+   * Removes expired credential caches and abandoned temporary files.
+   *
+   * @return number of removed files
+   */
+  int cleanup() throws IOException {
+    return cleanup(TicketCacheStore::isExpired);
+  }
+
+  @VisibleForTesting
+  int cleanup(Predicate<Path> expired) throws IOException {
+    if (!Files.isDirectory(baseDir)) {
+      return 0;
+    }
+    long staleTempBefore = System.currentTimeMillis()
+                           - TimeUnit.SECONDS.toMillis(Math.max(cleanupIntervalSec, 60));
+    int removed = 0;
+    try (DirectoryStream<Path> shards = Files.newDirectoryStream(baseDir, Files::isDirectory)) {
+      for (Path shard : shards) {
+        try (DirectoryStream<Path> caches = Files.newDirectoryStream(shard)) {
+          for (Path cache : caches) {
+            try {
+              boolean remove = isTemp(cache)
+                  ? Files.getLastModifiedTime(cache).toMillis() < staleTempBefore
+                  : expired.test(cache);
+              if (remove && Files.deleteIfExists(cache)) {
+                LOGGER.debug("Removed expired credentials cache file: " + cache);
+                removed++;
+              }
+            } catch (NoSuchFileException ignore) {
+              // temporary file renamed (or cache removed) by concurrent update
+            }
+          }
+        }
+      }
+    }
+    return removed;
+  }
+
+  @VisibleForTesting
+  Path getBaseDir() {
+    return baseDir;
+  }
+
+  static String shardOf(String fileName) {
+    int hash = fileName.hashCode();
+    return String.format("%02x", (hash ^ (hash >>> 16)) & (SHARDS - 1));
+  }
+
+  static Path tempFor(Path target) {
+    return target.resolveSibling(TEMP_PREFIX + target.getFileName() + "."
+                                 + UUID.randomUUID() + TEMP_SUFFIX);
+  }
+
+  static boolean isExpired(Path cache) {
+    CredentialsCache cc = CredentialsCache.getInstance(cache.toString());
+    if (cc == null) {
+      return false;
+    }
+    Credentials tgt = cc.getDefaultCreds();
+    return tgt != null && tgt.getEndTime() != null
+           && tgt.getEndTime().getTime() < System.currentTimeMillis();
+  }
+
+  private static boolean isTemp(Path file) {
+    String name = file.getFileName().toString();
+    return name.startsWith(TEMP_PREFIX) && name.endsWith(TEMP_SUFFIX);
+  }
+
+  private static void commit(Path temp, Path target) throws IOException {
+    try {
+      Files.move(temp, target, StandardCopyOption.ATOMIC_MOVE);
+    } catch (AtomicMoveNotSupportedException e) {
+      LOGGER.warn("Atomic move not supported, replacing credentials cache in place: " + target);
+      Files.move(temp, target, StandardCopyOption.REPLACE_EXISTING);
+    }
+  }
+
+  private void ensureDirectory(Path shard) {
+    if (knownShards.contains(shard)) {
+      return;
+    }
+    try {
+      if (!Files.isDirectory(shard)) {
+        Files.createDirectories(shard);
+        restrictToOwner(shard);
+      }
+      knownShards.add(shard);
+    } catch (IOException e) {
+      throw new IllegalStateException("Can't create credentials cache directory: " + shard, e);
+    }
+  }
+
+  private static void restrictToOwner(Path dir) throws IOException {
+    try {
+      Files.setPosixFilePermissions(dir, PosixFilePermissions.fromString("rwx------"));
+    } catch (UnsupportedOperationException ignore) {
+      LOGGER.debug("Posix file permissions not supported for: " + dir);
+    }
+  }
+
+  private void cleanupQuietly() {
+    try {
+      int removed = cleanup();
+      LOGGER.debug("Credentials cache cleanup finished, removed " + removed + " files");
+    } catch (IOException | RuntimeException e) {
+      LOGGER.warn("Credentials cache cleanup failed", e);
+    }
+  }
+
+  @FunctionalInterface
+  interface CacheWriter<E extends Exception> {
+    void write(String tempLocation) throws E, IOException;
+  }
+}
@@ -16,6 +16,7 @@
 package org.trustedanalytics.hadoop.config;
 
 import org.apache.commons.io.IOUtils;
+import org.apache.hadoop.conf.Configuration;
 import org.junit.Before;
 import org.junit.Test;
 import org.trustedanalytics.hadoop.config.client.AppConfiguration;
@@ -26,13 +27,18 @@ import org.trustedanalytics.hadoop.config.client.ServiceType;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Set;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 
 public class CloudFoundryAppConfigurationTest {
 
@@ -228,4 +234,150 @@ public class CloudFoundryAppConfigurationTest {
     assertThat(actual.get(), equalTo("US-WEST-2.COMPUTE.INTERNAL"));
   }
 
+  @Test
+  public void getServiceConfigList_oneServiceInstanceBound_returnSingletonList() throws Exception {
+    //given
+    AppConfiguration helper = Configurations.newInstanceFromJson(vcapServices);
+
+    //when
+    List<ServiceInstanceConfiguration> actual = helper.getServiceConfigList(ServiceType.HDFS_TYPE);
+
+    //then
+    assertThat(actual.size(), equalTo(1));
+    assertThat(actual.get(0).getName(), equalTo("hdfs-instance"));
+  }
+
+  @Test
+  public void getServiceConfigList_notExistentService_returnEmptyList() throws Exception {
+    //given
+    AppConfiguration helper = Configurations.newInstanceFromJson(vcapServices);
+
+    //when
+    List<ServiceInstanceConfiguration> actual =
+        helper.getServiceConfigList(ServiceType.GEAR_PUMP_TYPE);
+
+    //then
+    assertThat(actual.isEmpty(), equalTo(true));
+  }
+
+  @Test
+  public void getServiceConfigIfExists_notExistentService_returnEmpty() throws Exception {
+    //given
+    AppConfiguration helper = Configurations.newInstanceFromJson(vcapServices);
+
+    //when
+    Optional<ServiceInstanceConfiguration> actual =
+        helper.getServiceConfigIfExists(ServiceType.GEAR_PUMP_TYPE);
+
+    //then
+    assertThat(actual.isPresent(), equalTo(false));
+  }
+
+  @Test
+  public void getServiceConfig_byNameAndByType_returnSameInstanceConfiguration() throws Exception {
+    //given
+    AppConfiguration helper = Configurations.newInstanceFromJson(vcapServices);
+
+    //when
+    ServiceInstanceConfiguration byName = helper.getServiceConfig("yarn-instance");
+    ServiceInstanceConfiguration byType = helper.getServiceConfig(ServiceType.YARN_TYPE);
+
+    //then
+    assertThat(byName.getName(), equalTo(byType.getName()));
+    assertThat(byName.asMap(), equalTo(byType.asMap()));
+    assertThat(byName, sameInstance(byType));
+  }
+
+  @Test
+  public void asHadoopConfiguration_calledTwice_returnIndependentCopies() throws Exception {
+    //given
+    ServiceInstanceConfiguration hdfs =
+        Configurations.newInstanceFromJson(vcapServices).getServiceConfig(ServiceType.HDFS_TYPE);
+
+    //when
+    Configuration first = hdfs.asHadoopConfiguration();
+    first.set("hadoop.security.authentication", "simple");
+    Configuration second = hdfs.asHadoopConfiguration();
+
+    //then
+    assertThat(second.get("hadoop.security.authentication"), equalTo("kerberos"));
+    assertThat(second.get("dfs.namenode.kerberos.principal"),
+               equalTo("hdfs/_HOST@US-WEST-2.COMPUTE.INTERNAL"));
+    assertThat(second.size(), equalTo(2));
+  }
+
+  @Test
+  public void getProperty_calledTwice_returnValueResolvedOnce() throws Exception {
+    //given
+    ServiceInstanceConfiguration kerberos =
+        Configurations.newInstanceFromJson(vcapServices).getServiceConfig("kerberos-service");
+
+    //when
+    Optional<String> first = kerberos.getProperty(Property.KRB_KDC);
+    Optional<String> second = kerberos.getProperty(Property.KRB_KDC);
+
+    //then
+    assertThat(second, sameInstance(first));
+    assertThat(kerberos.getProperty(Property.HBASE_NAMESPACE), equalTo(Optional.empty()));
+  }
+
+
+  @Test
+  public void getProperty_encodedZip_resolvedOnDemandAndNotCached() throws Exception {
+    //given
+    ServiceInstanceConfiguration hdfs = Configurations.newInstanceFromJson(
+        "{\"hdfs\": [{\"name\": \"hdfs-zip\", \"credentials\": {\"uri\": \"hdfs://nn/\", "
+        + "\"HADOOP_CONFIG_ZIP\": {\"encoded_zip\": \"UEsFBgAAAAAAAAAAAAAAAAAAAAAAAA==\"}}}]}")
+        .getServiceConfig("hdfs-zip");
+
+    //when
+    hdfs.getProperty(Property.HDFS_URI);
+    Optional<String> first = hdfs.getProperty(Property.HADOOP_ZIP);
+    Optional<String> second = hdfs.getProperty(Property.HADOOP_ZIP);
+
+    //then
+    assertThat(second, equalTo(first));
+    assertThat(second, not(sameInstance(first)));
+  }
+  @Test
+  public void asMap_manyInstancesWithSameProperties_keysAndValuesStoredOnce() throws Exception {
+    //given
+    int instances = 300;
+    int keys = 40;
+    String vcap = vcapWithHbaseInstances(instances, keys);
+    Set<String> stored = Collections.newSetFromMap(new IdentityHashMap<>());
+
+    //when
+    for (AppConfiguration conf : new AppConfiguration[]{Configurations.newInstanceFromJson(vcap),
+                                                        Configurations.newInstanceFromJson(vcap)}) {
+      for (ServiceInstanceConfiguration hbase : conf.getServiceConfigList(ServiceType.HBASE_TYPE)) {
+        hbase.asMap().forEach((key, value) -> {
+          stored.add(key);
+          stored.add(value);
+        });
+        hbase.asHadoopConfiguration().forEach(param -> {
+          stored.add(param.getKey());
+          stored.add(param.getValue());
+        });
+      }
+    }
+
+    //then
+    // every key and both distinct values, in all instances of both configurations
+    assertThat(stored.size(), equalTo(keys + 2));
+  }
+
+  private static String vcapWithHbaseInstances(int instances, int keys) {
+    StringBuilder json = new StringBuilder("{\"hbase\":[");
+    for (int i = 0; i < instances; i++) {
+      json.append(i > 0 ? "," : "").append("{\"name\":\"hbase-").append(i)
+          .append("\",\"credentials\":{\"HADOOP_CONFIG_KEY\":{");
+      for (int key = 0; key < keys; key++) {
+        json.append(key > 0 ? "," : "").append("\"hbase.property.").append(key)
+            .append("\":\"").append(key % 2 == 0 ? "true" : "hbase-master:60000").append('"');
+      }
+      json.append("}}}");
+    }
+    return json.append("]}").toString();
+  }
 }
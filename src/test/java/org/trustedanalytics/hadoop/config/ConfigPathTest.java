@@ -16,10 +16,14 @@
 package org.trustedanalytics.hadoop.config;
 
 import org.junit.Test;
+import org.trustedanalytics.hadoop.config.client.Property;
 import org.trustedanalytics.hadoop.config.internal.ConfigPath;
 
+import java.util.stream.Collectors;
+
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.contains;
 import static org.hamcrest.Matchers.hasSize;
 
 
@@ -54,4 +58,53 @@ public class ConfigPathTest {
     assertThat(path.getStack(), allOf(hasSize(2)));
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testAppend_declarativeSteps_appendedInOrder() throws Exception {
+    //given
+    ConfigPath path = ConfigPath.createPath().get("node1");
+
+    //when
+    path.append(ConfigPath.createPath().find("node2").children());
+
+    //then
+    assertThat(path.getSteps().stream().map(Object::toString).collect(Collectors.toList()),
+               contains("get(node1)", "find(node2)", "children()"));
+    assertThat(path.getStack(), hasSize(3));
+  }
+
+  @Test
+  public void testUnmodifiable_appendedToOtherPath_stepsCopiedAndSharedPathNotChanged()
+      throws Exception {
+    //given
+    ConfigPath shared = ConfigPath.createPath().find("node1").unmodifiable();
+
+    //when
+    ConfigPath path = ConfigPath.createPath().append(shared).get("node2");
+
+    //then
+    assertThat(path.getSteps(), hasSize(2));
+    assertThat(shared.getSteps(), hasSize(1));
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testUnmodifiable_stepAdded_throwsUnsupportedOperationException() throws Exception {
+    //given
+    ConfigPath shared = ConfigPath.createPath().find("node1").unmodifiable();
+
+    //when
+    shared.get("node2");
+
+    //then
+    //exception is thrown
+  }
+
+  @Test(expected = UnsupportedOperationException.class)
+  public void testGetConfPath_propertyPathExtended_throwsUnsupportedOperationException()
+      throws Exception {
+    //when
+    Property.HDFS_URI.getConfPath().find("other");
+
+    //then
+    //exception is thrown
+  }
+}
@@ -15,13 +15,29 @@
  */
 package org.trustedanalytics.hadoop.config;
 
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.BooleanNode;
+import com.fasterxml.jackson.databind.node.IntNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.fasterxml.jackson.databind.node.TextNode;
+import com.google.common.collect.ImmutableList;
+import com.google.common.collect.ImmutableMap;
+
 import org.apache.commons.io.IOUtils;
 import org.junit.Before;
 import org.junit.Test;
 import org.trustedanalytics.hadoop.config.internal.ConfigNode;
+import org.trustedanalytics.hadoop.config.internal.ConfigPath;
+import org.trustedanalytics.hadoop.config.internal.JsonConfigNode;
 import org.trustedanalytics.hadoop.config.internal.JsonConfigurationReader;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.Random;
 
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.hamcrest.Matchers.*;
@@ -55,6 +71,32 @@ public class JsonConfigNodeTest {
     assertThat(children.get(1).name(), equalTo("yarn"));
   }
 
+  @Test
+  public void testGetChildren_calledTwice_returnSameChildren() throws Exception {
+    ConfigNode hdfs = root.find("hdfs");
+
+    assertThat(hdfs.getChildren(), sameInstance(hdfs.getChildren()));
+  }
+
+  @Test
+  public void testForEachChild_objectNode_passesFieldNamesAndValues() throws Exception {
+    Map<String, String> children = new LinkedHashMap<>();
+
+    root.find("hdfs").getChildren().get(0).get("configuration").forEachChild(children::put);
+
+    assertThat(children, equalTo(ImmutableMap.of("param1", "value_param1",
+                                                 "param2", "value_param2")));
+  }
+
+  @Test
+  public void testForEachChild_arrayOfChildren_passesInstanceNames() throws Exception {
+    List<String> names = new ArrayList<>();
+
+    root.find("hdfs").forEachChild((name, value) -> names.add(name));
+
+    assertThat(names, contains("instance1", "instance2"));
+  }
+
   @Test
   public void testFind_existentNode_returnConfNodeObj() throws Exception {
     ConfigNode node = root.find("param3");
@@ -117,4 +159,167 @@ public class JsonConfigNodeTest {
   public void testSelectOne_NotTextualNode_throwsException() throws Exception {
     root.get("VCAP_SERVICES").get("hdfs").selectOne("configuration","some_value");
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testSelectAll_namedInstances_returnNodesNamedByValue() throws Exception {
+    List<ConfigNode> nodes = root.get("VCAP_SERVICES").selectAll("name");
+
+    assertThat(nodes.size(), equalTo(2));
+    assertThat(nodes.get(0).name(), equalTo("instance1"));
+    assertThat(nodes.get(1).find("param3").value(), equalTo("value_param3"));
+  }
+
+  @Test
+  public void testSelectAll_notTextualNodes_returnEmptyList() throws Exception {
+    List<ConfigNode> nodes = root.selectAll("configuration");
+
+    assertThat(nodes, empty());
+  }
+
+  @Test
+  public void testResolve_declarativePath_returnNode() throws Exception {
+    ConfigPath path = ConfigPath.createPath().get("VCAP_SERVICES").get("hdfs")
+        .selectOne("name", "instance2").find("param3");
+
+    assertThat(root.resolve(path).get().value(), equalTo("value_param3"));
+  }
+
+  @Test
+  public void testResolve_notExistentNode_returnEmpty() throws Exception {
+    ConfigPath path = ConfigPath.createPath().get("VCAP_SERVICES").find("not_existent");
+
+    assertThat(root.resolve(path).isPresent(), is(false));
+  }
+
+  @Test
+  public void testResolveAll_children_returnAllChildren() throws Exception {
+    ConfigPath path = ConfigPath.createPath().get("VCAP_SERVICES").get("hdfs").children();
+
+    List<ConfigNode> nodes = root.resolveAll(path);
+
+    assertThat(nodes.size(), equalTo(2));
+    assertThat(nodes.get(1).name(), equalTo("instance2"));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testResolve_forkingPath_throwsException() throws Exception {
+    root.resolve(ConfigPath.createPath().get("VCAP_SERVICES").get("hdfs").children());
+  }
+
+  @Test
+  public void testResolveAll_calledTwiceWithSamePath_returnSameNodes() throws Exception {
+    ConfigPath path = ConfigPath.createPath().find("param1");
+
+    assertThat(root.resolveAll(path), sameInstance(root.resolveAll(path)));
+  }
+
+  @Test
+  public void testResolveAll_opaqueSteps_evaluatedWithNodeMethods() throws Exception {
+    ConfigPath found = ConfigPath.createPath().get("VCAP_SERVICES")
+        .add(node -> node.findAll("param3"));
+    ConfigPath missing = ConfigPath.createPath()
+        .add(node -> ImmutableList.of(node.find("not_existent")));
+
+    assertThat(root.resolveAll(found).size(), equalTo(2));
+    assertThat(root.resolveAll(missing), empty());
+  }
+
+  @Test
+  public void testLookups_randomDocuments_sameResultsAsJackson() throws Exception {
+    Random random = new Random(20161019L);
+    ObjectMapper mapper = new ObjectMapper();
+    for (int document = 0; document < 200; document++) {
+      JsonNode tree = randomNode(random, mapper, 0);
+      ConfigNode fromTree = JsonConfigNode.createInstance(tree);
+      ConfigNode fromText = JsonConfigurationReader.getReader(mapper.writeValueAsString(tree))
+          .getRootNode();
+
+      assertSameLookups(fromTree, tree);
+      assertSameLookups(fromText, tree);
+    }
+  }
+
+  private static final String[] RANDOM_NAMES = {"a", "b", "c", "name"};
+
+  private static JsonNode randomNode(Random random, ObjectMapper mapper, int depth) {
+    int kind = depth > 4 ? random.nextInt(3) : random.nextInt(5);
+    switch (kind) {
+      case 0:
+        return TextNode.valueOf("v" + random.nextInt(5));
+      case 1:
+        return IntNode.valueOf(random.nextInt(5));
+      case 2:
+        return BooleanNode.valueOf(random.nextBoolean());
+      case 3:
+        ArrayNode array = mapper.createArrayNode();
+        for (int i = random.nextInt(4); i > 0; i--) {
+          array.add(randomNode(random, mapper, depth + 1));
+        }
+        return array;
+      default:
+        ObjectNode object = mapper.createObjectNode();
+        for (int i = random.nextInt(4); i > 0; i--) {
+          String field = RANDOM_NAMES[random.nextInt(RANDOM_NAMES.length)];
+          object.set(field, randomNode(random, mapper, depth + 1));
+        }
+        return object;
+    }
+  }
+
+  /**
+   * Compares lookups of every node in the subtree with Jackson searches they replaced.
+   */
+  private static void assertSameLookups(ConfigNode node, JsonNode expected) {
+    for (String name : RANDOM_NAMES) {
+      JsonNode value = expected.findValue(name);
+      try {
+        assertThat(render(node.find(name)), equalTo(render(value)));
+      } catch (NullPointerException notFound) {
+        assertThat(value, nullValue());
+      }
+
+      List<String> found = new ArrayList<>();
+      node.findAll(name).forEach(n -> found.add(render(n)));
+      List<String> foundByJackson = new ArrayList<>();
+      expected.findParents(name).forEach(p -> foundByJackson.add(render(p.get(name))));
+      assertThat(found, equalTo(foundByJackson));
+
+      List<String> selected = new ArrayList<>();
+      node.selectAll(name).forEach(n -> selected.add(n.name() + render(n)));
+      List<String> selectedByJackson = new ArrayList<>();
+      expected.findParents(name).stream()
+          .filter(p -> p.get(name).isTextual())
+          .forEach(p -> selectedByJackson.add(p.get(name).textValue() + render(p)));
+      assertThat(selected, equalTo(selectedByJackson));
+    }
+    List<ConfigNode> children = node.getChildren();
+    List<JsonNode> expectedChildren = new ArrayList<>();
+    expected.elements().forEachRemaining(expectedChildren::add);
+    assertThat(children.size(), equalTo(expectedChildren.size()));
+    for (int i = 0; i < children.size(); i++) {
+      assertSameLookups(children.get(i), expectedChildren.get(i));
+    }
+  }
+
+  private static String render(ConfigNode node) {
+    StringBuilder rendered = new StringBuilder(node.value()).append('[');
+    List<ConfigNode> children = node.getChildren();
+    int[] i = {0};
+    node.forEachChild((name, value) -> rendered.append(name).append('=')
+        .append(render(children.get(i[0]++))).append(','));
+    return rendered.append(']').toString();
+  }
+
+  private static String render(JsonNode node) {
+    StringBuilder rendered = new StringBuilder(node.asText()).append('[');
+    if (node.isArray()) {
+      node.elements().forEachRemaining(child -> rendered
+          .append(child.has("name") ? child.get("name").asText() : null).append('=')
+          .append(render(child)).append(','));
+    } else {
+      node.fields().forEachRemaining(field -> rendered.append(field.getKey()).append('=')
+          .append(render(field.getValue())).append(','));
+    }
+    return rendered.append(']').toString();
+  }
+}
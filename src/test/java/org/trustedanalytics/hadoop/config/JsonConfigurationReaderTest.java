@@ -15,17 +15,42 @@
  */
 package org.trustedanalytics.hadoop.config;
 
+import com.google.common.base.Strings;
+import com.google.common.collect.ImmutableSet;
+
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 import org.trustedanalytics.hadoop.config.internal.ConfigNode;
 import org.trustedanalytics.hadoop.config.internal.ConfigurationReader;
 import org.trustedanalytics.hadoop.config.internal.JsonConfigurationReader;
 
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.util.Arrays;
+import java.util.Set;
+import java.util.zip.CRC32;
+
 import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.lessThan;
+import static org.hamcrest.Matchers.not;
 import static org.hamcrest.Matchers.notNullValue;
 
 
 public class JsonConfigurationReaderTest {
 
+  private static final FileTime LONG_AGO = FileTime.fromMillis(0);
+
+  private static final Set<String> SECTIONS = ImmutableSet.of("hdfs");
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   @Test(expected = NullPointerException.class)
   public void testGetReader_NullJsonString_throwsNLP() throws Exception {
     JsonConfigurationReader.getReader(null);
@@ -47,4 +72,127 @@ public class JsonConfigurationReaderTest {
     assertThat(rootNode, notNullValue());
   }
 
-}
\ No newline at end of file
+  @Test
+  public void testRootNode_longStringValue_returnDecodedValue() throws Exception {
+    String zip = Strings.repeat("UEsDBBQ\\/AAgACAAA", 1000);
+    String jsonString = "{\"hdfs\": [{\"name\": \"hdfs\", \"HADOOP_CONFIG_ZIP\": {\"encoded_zip\": \""
+                        + zip + "\"}}]}";
+    ConfigNode rootNode = JsonConfigurationReader.getReader(jsonString).getRootNode();
+
+    assertThat(rootNode.find("encoded_zip").value(),
+               equalTo(Strings.repeat("UEsDBBQ/AAgACAAA", 1000)));
+    assertThat(rootNode.find("name").value(), equalTo("hdfs"));
+  }
+
+  @Test(expected = NullPointerException.class)
+  public void testRootNode_sectionNotRequested_sectionSkipped() throws Exception {
+    String jsonString = "{\"hdfs\": [{\"uri\": \"hdfs://\"}], \"mysql\": [{\"port\": 3306}]}";
+    ConfigNode rootNode =
+        JsonConfigurationReader.getReader(jsonString, ImmutableSet.of("hdfs")).getRootNode();
+
+    assertThat(rootNode.find("uri").value(), equalTo("hdfs://"));
+    rootNode.get("mysql");
+  }
+
+  @Test
+  public void testGetReader_snapshotOfSameJson_restoredWithoutRewrite() throws Exception {
+    //given
+    String zip = Strings.repeat("UEsDBBQ\\/AAgACAAA", 1000);
+    String jsonString = "{\"hdfs\": [{\"name\": \"hdfs\", \"HADOOP_CONFIG_ZIP\": {\"encoded_zip\": \""
+                        + zip + "\"}}], \"mysql\": [{\"port\": 3306}]}";
+    Path snapshot = folder.getRoot().toPath().resolve("config.snapshot");
+    JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot);
+    Files.setLastModifiedTime(snapshot, LONG_AGO);
+
+    //when
+    ConfigNode rootNode =
+        JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot).getRootNode();
+
+    //then
+    assertThat(Files.getLastModifiedTime(snapshot), equalTo(LONG_AGO));
+    assertThat(rootNode.find("encoded_zip").value(),
+               equalTo(Strings.repeat("UEsDBBQ/AAgACAAA", 1000)));
+    assertThat(rootNode.find("name").value(), equalTo("hdfs"));
+    assertThat(rootNode.findAll("port"), empty());
+  }
+
+  @Test
+  public void testGetReader_snapshotOfOtherJson_jsonParsedAndSnapshotRewritten()
+      throws Exception {
+    //given
+    Path snapshot = folder.getRoot().toPath().resolve("config.snapshot");
+    JsonConfigurationReader.getReader("{\"hdfs\": [{\"uri\": \"hdfs://old\"}]}", SECTIONS,
+                                      snapshot);
+    Files.setLastModifiedTime(snapshot, LONG_AGO);
+
+    //when
+    ConfigNode rootNode = JsonConfigurationReader
+        .getReader("{\"hdfs\": [{\"uri\": \"hdfs://new\"}]}", SECTIONS, snapshot).getRootNode();
+
+    //then
+    assertThat(rootNode.find("uri").value(), equalTo("hdfs://new"));
+    assertThat(Files.getLastModifiedTime(snapshot), not(equalTo(LONG_AGO)));
+  }
+
+  @Test
+  public void testGetReader_damagedSnapshot_jsonParsed() throws Exception {
+    //given
+    String jsonString = "{\"hdfs\": [{\"uri\": \"hdfs://\"}]}";
+    Path snapshot = folder.getRoot().toPath().resolve("config.snapshot");
+    JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    Files.write(snapshot, Arrays.copyOf(bytes, bytes.length - 7));
+
+    //when
+    ConfigNode rootNode =
+        JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot).getRootNode();
+
+    //then
+    assertThat(rootNode.find("uri").value(), equalTo("hdfs://"));
+    assertThat(Files.size(snapshot), equalTo((long) bytes.length));
+  }
+
+  @Test
+  public void testGetReader_snapshotWritten_sourceJsonNotStored() throws Exception {
+    //given
+    String zip = Strings.repeat("UEsDBBQ", 10000);
+    String jsonString = "{\"hdfs\": [{\"uri\": \"hdfs://\", \"encoded_zip\": \"" + zip + "\"}]}";
+    Path snapshot = folder.getRoot().toPath().resolve("config.snapshot");
+
+    //when
+    JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot);
+
+    //then
+    assertThat(Files.size(snapshot), lessThan((long) zip.length()));
+    assertThat(JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot).getRootNode()
+                   .find("encoded_zip").value(), equalTo(zip));
+    assertThat(PosixFilePermissions.toString(Files.getPosixFilePermissions(snapshot)),
+               equalTo("rw-------"));
+  }
+
+  @Test
+  public void testGetReader_snapshotWithBrokenNodeTableAndValidChecksum_jsonParsed()
+      throws Exception {
+    //given
+    String jsonString = "{\"hdfs\": [{\"uri\": \"hdfs://\"}]}";
+    Path snapshot = folder.getRoot().toPath().resolve("config.snapshot");
+    JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot);
+    byte[] bytes = Files.readAllBytes(snapshot);
+    // nodes: root, hdfs array, its element, uri; element's subtree ends at the element itself
+    ByteBuffer broken = ByteBuffer.wrap(bytes.clone());
+    int nodeTable = bytes.length - 4 - 4 * 17;
+    broken.putInt(nodeTable + 2 * 17 + 5, 2);
+    CRC32 crc = new CRC32();
+    crc.update(broken.array(), 0, bytes.length - 4);
+    broken.putInt(bytes.length - 4, (int) crc.getValue());
+    Files.write(snapshot, broken.array());
+
+    //when
+    ConfigNode rootNode =
+        JsonConfigurationReader.getReader(jsonString, SECTIONS, snapshot).getRootNode();
+
+    //then
+    assertThat(rootNode.find("hdfs").getChildren().size(), equalTo(1));
+    assertThat(Files.readAllBytes(snapshot), equalTo(bytes));
+  }
+}
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Optional;
+import java.util.function.Supplier;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class ConfigurationStoreTest {
+
+  private final ConfigurationStore toTest = new ConfigurationStore();
+
+  private String vcapServices;
+
+  @Before
+  public void setUp() throws Exception {
+    vcapServices = IOUtils.toString(getClass().getResourceAsStream("/env_vcap_service.json"));
+  }
+
+  @Test
+  public void testPut_storedConfiguration_sameLookupsAsParsedConfiguration() throws Exception {
+    //given
+    AppConfiguration parsed = Configurations.newInstanceFromJson(vcapServices);
+
+    //when
+    AppConfiguration stored = toTest.put("tenant", vcapServices);
+
+    //then
+    for (ServiceType type : ServiceType.values()) {
+      List<ServiceInstanceConfiguration> expected = parsed.getServiceConfigList(type);
+      List<ServiceInstanceConfiguration> actual = stored.getServiceConfigList(type);
+      assertThat(actual.size(), equalTo(expected.size()));
+      for (int i = 0; i < expected.size(); i++) {
+        ServiceInstanceConfiguration actualInstance = actual.get(i);
+        ServiceInstanceConfiguration expectedInstance = expected.get(i);
+        assertThat(orNull(actualInstance::getName), equalTo(orNull(expectedInstance::getName)));
+        assertThat(orNull(actualInstance::asMap), equalTo(orNull(expectedInstance::asMap)));
+        for (Property property : Property.values()) {
+          assertThat(actual.get(i).getProperty(property),
+                     equalTo(expected.get(i).getProperty(property)));
+        }
+      }
+    }
+    assertThat(stored.getServiceConfig("hdfs-instance").getProperty(Property.HDFS_URI),
+               equalTo(parsed.getServiceConfig("hdfs-instance").getProperty(Property.HDFS_URI)));
+  }
+
+  @Test
+  public void testPut_sameConfigurationOfManyTenants_instancesShared() throws Exception {
+    //when
+    AppConfiguration first = toTest.put("first", vcapServices);
+    AppConfiguration second = toTest.put("second", new String(vcapServices));
+
+    //then
+    assertThat(second, not(sameInstance(first)));
+    assertThat(second.getServiceConfig(ServiceType.HDFS_TYPE),
+               sameInstance(first.getServiceConfig(ServiceType.HDFS_TYPE)));
+    assertThat(second.getServiceConfig("hdfs-instance"),
+               sameInstance(first.getServiceConfig(ServiceType.HDFS_TYPE)));
+  }
+
+  @Test
+  public void testPut_instancesDifferingByName_hadoopPropertiesShared() throws Exception {
+    //when
+    ServiceInstanceConfiguration first = toTest.put("first", hdfs("hdfs-first"))
+        .getServiceConfig(ServiceType.HDFS_TYPE);
+    ServiceInstanceConfiguration second = toTest.put("second", hdfs("hdfs-second"))
+        .getServiceConfig(ServiceType.HDFS_TYPE);
+
+    //then
+    assertThat(second, not(sameInstance(first)));
+    assertThat(hadoopPropertiesOf(second), sameInstance(hadoopPropertiesOf(first)));
+    assertThat(second.asHadoopConfiguration().get("fs.defaultFS"), equalTo("hdfs://nn"));
+  }
+
+  @Test
+  public void testRemove_storedTenant_notFoundAnymore() throws Exception {
+    //given
+    toTest.put("tenant", vcapServices);
+
+    //when
+    toTest.remove("tenant");
+
+    //then
+    assertThat(toTest.get("tenant").isPresent(), is(false));
+    assertThat(toTest.getTenants().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testPut_unnamedInstanceWithoutHadoopConfiguration_storedWithoutBoth()
+      throws Exception {
+    //given
+    String conf = "{\"zookeeper\": [{\"credentials\": {\"zk.cluster\": \"zk:2181\"}}]}";
+
+    //when
+    ServiceInstanceConfiguration stored =
+        toTest.put("tenant", conf).getServiceConfig(ServiceType.ZOOKEEPER_TYPE);
+
+    //then
+    assertThat(orNull(stored::getName), nullValue());
+    assertThat(((ConfigurationStore.StoredInstanceConfiguration) stored).getHadoopProperties(),
+               equalTo(Optional.empty()));
+    assertThat(stored.getProperty(Property.ZOOKEPER_URI), equalTo(Optional.of("zk:2181")));
+  }
+
+  /**
+   * Unnamed instances and instances without hadoop configuration throw NullPointerException.
+   */
+  private static <T> T orNull(Supplier<T> lookup) {
+    try {
+      return lookup.get();
+    } catch (NullPointerException missing) {
+      return null;
+    }
+  }
+
+  private static Object hadoopPropertiesOf(ServiceInstanceConfiguration instance) {
+    return ((ConfigurationStore.StoredInstanceConfiguration) instance).getHadoopProperties().get();
+  }
+
+  private static String hdfs(String name) {
+    return "{\"hdfs\": [{\"name\": \"" + name + "\", \"credentials\": {"
+           + "\"HADOOP_CONFIG_KEY\": {\"fs.defaultFS\": \"hdfs://nn\", \"dfs.replication\": \"3\"}"
+           + "}}]}";
+  }
+}
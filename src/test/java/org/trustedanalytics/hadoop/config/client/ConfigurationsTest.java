@@ -16,17 +16,33 @@
 package org.trustedanalytics.hadoop.config.client;
 
 import org.apache.commons.io.IOUtils;
+import org.junit.After;
 import org.junit.Before;
+import org.junit.Rule;
 import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
 
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
 import java.util.List;
+import java.util.stream.Collectors;
 
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
 import static org.hamcrest.Matchers.hasSize;
 import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
 import static org.junit.Assert.assertThat;
+import static org.junit.Assert.fail;
 
 public class ConfigurationsTest {
 
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
   private String jsonSerializedEnv;
 
   @Before
@@ -34,6 +50,11 @@ public class ConfigurationsTest {
     jsonSerializedEnv = IOUtils.toString(getClass().getResourceAsStream("/env_vcap_service.json"));
   }
 
+  @After
+  public void tearDown() {
+    Configurations.refreshSharedInstance();
+  }
+
   @Test
   public void testNewInstanceFromJson_correctConfSerializedToJson_returnsAppConfigurationObject()
       throws Exception {
@@ -48,4 +69,113 @@ public class ConfigurationsTest {
     assertThat(hdfs.getName(), is("hdfs-instance"));
     assertThat(yarn.getName(), is("yarn-instance"));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testSharedInstance_sameConf_returnsSameInstance() throws Exception {
+    //given
+    AppConfiguration first = Configurations.sharedInstance(jsonSerializedEnv);
+
+    //when
+    AppConfiguration second = Configurations.sharedInstance(new String(jsonSerializedEnv));
+
+    //then
+    assertThat(second, sameInstance(first));
+  }
+
+  @Test
+  public void testSharedInstance_confChanged_returnsNewInstance() throws Exception {
+    //given
+    AppConfiguration first = Configurations.sharedInstance(jsonSerializedEnv);
+
+    //when
+    AppConfiguration second = Configurations.sharedInstance("{\"hdfs\": []}");
+
+    //then
+    assertThat(second, not(sameInstance(first)));
+    assertThat(second.getServiceConfigList(ServiceType.HDFS_TYPE), hasSize(0));
+  }
+
+  @Test
+  public void testSharedInstance_refreshed_returnsNewInstance() throws Exception {
+    //given
+    AppConfiguration first = Configurations.sharedInstance(jsonSerializedEnv);
+
+    //when
+    Configurations.refreshSharedInstance();
+    AppConfiguration second = Configurations.sharedInstance(jsonSerializedEnv);
+
+    //then
+    assertThat(second, not(sameInstance(first)));
+    assertThat(second.getServiceConfig(ServiceType.HDFS_TYPE).getName(), is("hdfs-instance"));
+  }
+
+  @Test
+  public void testNewInstance_directoryOfServiceFiles_instancesMergedByType() throws Exception {
+    //given
+    Path dir = folder.newFolder("bindings").toPath();
+    write(dir.resolve("02-hdfs"), fragment("hdfs", "hdfs-b"));
+    write(dir.resolve("01-hdfs"), fragment("hdfs", "hdfs-a"));
+    write(dir.resolve("03-yarn"), fragment("yarn", "yarn-a"));
+    write(dir.resolve(".hidden"), "not a json");
+
+    //when
+    AppConfiguration configuration =
+        Configurations.newInstance(ConfigurationSource.directory(dir));
+
+    //then
+    List<ServiceInstanceConfiguration> hdfs =
+        configuration.getServiceConfigList(ServiceType.HDFS_TYPE);
+    assertThat(hdfs.stream().map(ServiceInstanceConfiguration::getName)
+                   .collect(Collectors.toList()), contains("hdfs-a", "hdfs-b"));
+    assertThat(configuration.getServiceConfig("hdfs-b").getName(), is("hdfs-b"));
+    assertThat(configuration.getServiceConfig(ServiceType.YARN_TYPE).getName(), is("yarn-a"));
+    assertThat(configuration.getServiceConfigList(ServiceType.HBASE_TYPE), hasSize(0));
+  }
+
+  @Test
+  public void testNewInstance_fileAndDirectory_documentsMergedInOrderOfSources() throws Exception {
+    //given
+    Path file = folder.newFile("vcap.json").toPath();
+    write(file, jsonSerializedEnv);
+    Path dir = folder.newFolder("bindings").toPath();
+    write(dir.resolve("hdfs"), fragment("hdfs", "hdfs-extra"));
+
+    //when
+    AppConfiguration configuration = Configurations.newInstance(
+        ConfigurationSource.file(file), ConfigurationSource.directory(dir));
+
+    //then
+    assertThat(configuration.getServiceConfigList(ServiceType.HBASE_TYPE), hasSize(2));
+    assertThat(configuration.getServiceConfigList(ServiceType.HDFS_TYPE).stream()
+                   .map(ServiceInstanceConfiguration::getName).collect(Collectors.toList()),
+               contains("hdfs-instance", "hdfs-extra"));
+    assertThat(configuration.getServiceConfig("hdfs-extra").getName(), is("hdfs-extra"));
+  }
+
+  @Test
+  public void testNewInstance_malformedDocument_throwsIOExceptionNamingDocument()
+      throws Exception {
+    //given
+    Path dir = folder.newFolder("bindings").toPath();
+    write(dir.resolve("hdfs"), fragment("hdfs", "hdfs-a"));
+    write(dir.resolve("broken"), "{\"hdfs\": [");
+
+    //when
+    try {
+      Configurations.newInstance(ConfigurationSource.directory(dir));
+      fail("IOException expected");
+    } catch (IOException expected) {
+      //then
+      assertThat(expected.getMessage(), containsString("broken"));
+    }
+  }
+
+  private static String fragment(String label, String name) {
+    return "{\"" + label + "\": [{\"name\": \"" + name + "\", \"label\": \"" + label
+           + "\", \"credentials\": {}}]}";
+  }
+
+  private static void write(Path file, String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -0,0 +1,110 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipOutputStream;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class HadoopZipConfigurationTest {
+
+  @Test
+  public void testProperties_zipWithSiteFiles_returnPropertiesOfAllSiteFiles() throws Exception {
+    //given
+    String zip = zip("core-site.xml", site("fs.defaultFS", "hdfs://nameservice1"),
+                     "conf/hdfs-site.xml", site("dfs.replication", "2"),
+                     "log4j.properties", "log4j.rootLogger=INFO");
+
+    //when
+    Map<String, String> properties = HadoopZipConfiguration.properties(zip);
+
+    //then
+    assertThat(properties.get("fs.defaultFS"), equalTo("hdfs://nameservice1"));
+    assertThat(properties.get("dfs.replication"), equalTo("2"));
+    assertThat(properties.size(), equalTo(2));
+  }
+
+  @Test
+  public void testProperties_sameZipTwice_parsedOnce() throws Exception {
+    //given
+    String zip = zip("yarn-site.xml", site("yarn.resourcemanager.hostname", "rm"));
+
+    //when
+    Map<String, String> first = HadoopZipConfiguration.properties(zip);
+    Map<String, String> second = HadoopZipConfiguration.properties(new String(zip));
+
+    //then
+    assertThat(second, sameInstance(first));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void testProperties_invalidSiteFile_throwsIllegalStateException() throws Exception {
+    HadoopZipConfiguration.properties(zip("core-site.xml", "<configuration><property>"));
+  }
+
+  @Test
+  public void testAsHadoopConfigurationWithZip_instanceWithZip_instancePropertiesOverlayZip()
+      throws Exception {
+    //given
+    String zip = zip("core-site.xml", site("hadoop.security.authentication", "simple")
+        .replace("</configuration>", "<property><name>io.file.buffer.size</name>"
+                                     + "<value>65536</value></property></configuration>"));
+    String vcap = "{\"hdfs\": [{\"name\": \"hdfs-instance\", \"credentials\": {"
+                  + "\"HADOOP_CONFIG_KEY\": {\"hadoop.security.authentication\": \"kerberos\"},"
+                  + "\"HADOOP_CONFIG_ZIP\": {\"encoded_zip\": \""
+                  + zip.replaceAll("(.{76})", "$1\\\\n") + "\"}}}]}";
+    ServiceInstanceConfiguration hdfs =
+        Configurations.newInstanceFromJson(vcap).getServiceConfig("hdfs-instance");
+
+    //when
+    Configuration conf = hdfs.asHadoopConfigurationWithZip();
+    conf.set("io.file.buffer.size", "1");
+
+    //then
+    assertThat(conf.get("hadoop.security.authentication"), equalTo("kerberos"));
+    assertThat(hdfs.asHadoopConfigurationWithZip().get("io.file.buffer.size"), equalTo("65536"));
+    assertThat(hdfs.asHadoopConfiguration().get("io.file.buffer.size"), nullValue());
+  }
+
+  private static String site(String name, String value) {
+    return "<?xml version=\"1.0\"?><configuration><property><name>" + name + "</name><value>"
+           + value + "</value></property></configuration>";
+  }
+
+  private static String zip(String... namesAndContents) throws IOException {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    try (ZipOutputStream zip = new ZipOutputStream(bytes)) {
+      for (int i = 0; i < namesAndContents.length; i += 2) {
+        zip.putNextEntry(new ZipEntry(namesAndContents[i]));
+        zip.write(namesAndContents[i + 1].getBytes(StandardCharsets.UTF_8));
+        zip.closeEntry();
+      }
+    }
+    return Base64.getEncoder().encodeToString(bytes.toByteArray());
+  }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import org.junit.Test;
+
+import java.lang.management.ManagementFactory;
+import java.util.Collections;
+import java.util.Optional;
+
+import javax.management.ObjectName;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.hasEntry;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.startsWith;
+import static org.junit.Assert.assertThat;
+
+public class InstrumentedAppConfigurationTest {
+
+  private final ConfigurationAccessMetrics metrics = new ConfigurationAccessMetrics(1);
+
+  private final AppConfiguration toTest = new InstrumentedAppConfiguration(
+      SimpleAppConfiguration.Builder.newInstance()
+          .withService(ServiceType.HDFS_TYPE, new SimpleInstanceConfiguration(
+              "hdfs-instance", null, Collections.singletonMap(Property.HDFS_URI, "hdfs://nn")))
+          .build(),
+      metrics);
+
+  @Test
+  public void testGetProperty_repeatedLookups_countedPerMethodInstanceAndProperty()
+      throws Exception {
+    //given
+    ServiceInstanceConfiguration hdfs = toTest.getServiceConfig(ServiceType.HDFS_TYPE);
+
+    //when
+    for (int i = 0; i < 3; i++) {
+      hdfs.getProperty(Property.HDFS_URI);
+    }
+    toTest.getServiceConfig("hdfs-instance");
+
+    //then
+    assertThat(metrics.getLookupsByMethod(), hasEntry("getServiceConfig(ServiceType)", 1L));
+    assertThat(metrics.getLookupsByMethod(), hasEntry("getProperty", 3L));
+    assertThat(metrics.getEstimatedLookups(),
+               hasEntry("getProperty hdfs-instance HDFS_URI", 3L));
+    assertThat(metrics.getEstimatedLookups(),
+               hasEntry("getServiceConfig(String) hdfs-instance", 1L));
+    assertThat(metrics.hottest(1), contains(startsWith("getProperty hdfs-instance HDFS_URI: ~3")));
+  }
+
+  @Test
+  public void testGetProperty_unnamedInstance_lookupRecordedWithoutName() throws Exception {
+    //given
+    AppConfiguration unnamed = new InstrumentedAppConfiguration(
+        Configurations.newInstanceFromJson(
+            "{\"zookeeper\": [{\"credentials\": {\"zk.cluster\": \"zk:2181\"}}]}"),
+        metrics);
+    ServiceInstanceConfiguration zookeeper = unnamed.getServiceConfig(ServiceType.ZOOKEEPER_TYPE);
+
+    //when
+    Optional<String> actual = zookeeper.getProperty(Property.ZOOKEPER_URI);
+
+    //then
+    assertThat(actual, is(Optional.of("zk:2181")));
+    assertThat(metrics.getEstimatedLookups(), hasEntry("getProperty ZOOKEPER_URI", 1L));
+  }
+
+  @Test
+  public void testGetServiceConfigList_instancesInstrumented() throws Exception {
+    //when
+    toTest.getServiceConfigList(ServiceType.HDFS_TYPE).get(0).asMap();
+
+    //then
+    assertThat(metrics.getLookupsByMethod(), hasEntry("getServiceConfigList", 1L));
+    assertThat(metrics.getEstimatedLookups(), hasEntry("asMap hdfs-instance", 1L));
+  }
+
+  @Test
+  public void testReset_lookupsRecorded_allForgotten() throws Exception {
+    //given
+    toTest.getServiceConfig(ServiceType.HDFS_TYPE);
+
+    //when
+    metrics.reset();
+
+    //then
+    assertThat(metrics.getLookupsByMethod(), hasEntry("getServiceConfig(ServiceType)", 0L));
+    assertThat(metrics.getEstimatedLookups().isEmpty(), is(true));
+  }
+
+  @Test
+  public void testInstrumented_metricsPublishedInJmx() throws Exception {
+    //when
+    Configurations.instrumented(toTest);
+
+    //then
+    Object sampleRate = ManagementFactory.getPlatformMBeanServer().getAttribute(
+        new ObjectName(ConfigurationAccessMetrics.OBJECT_NAME), "SampleRate");
+    assertThat(sampleRate, is(ConfigurationAccessMetrics.getInstance().getSampleRate()));
+  }
+}
@@ -0,0 +1,189 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import com.google.common.collect.ImmutableMap;
+
+import org.apache.hadoop.conf.Configuration;
+import org.junit.Test;
+import org.trustedanalytics.hadoop.config.client.LayeredConfiguration.LayeredProperties;
+
+import java.io.ByteArrayInputStream;
+import java.io.StringWriter;
+import java.lang.reflect.Method;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.instanceOf;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.nullValue;
+import static org.junit.Assert.assertThat;
+
+public class LayeredConfigurationTest {
+
+  private static final Map<String, String> PROPERTIES = ImmutableMap.of(
+      "fs.defaultFS", "hdfs://nameservice1",
+      "hadoop.security.authentication", "kerberos",
+      "dfs.replication", "3");
+
+  private final Configuration template = LayeredConfiguration.template(PROPERTIES);
+
+  @Test
+  public void testTemplate_copied_copySharesPropertiesOfTemplate() throws Exception {
+    //when
+    Configuration copy = new Configuration(template);
+
+    //then
+    assertThat(getProps(copy), instanceOf(LayeredConfiguration.LayeredProperties.class));
+    assertThat(asMap(copy), equalTo(PROPERTIES));
+    assertThat(copy.size(), is(3));
+  }
+
+  @Test
+  public void testTemplate_copiesModified_changesVisibleOnlyInModifiedCopy() throws Exception {
+    //given
+    Configuration first = new Configuration(template);
+    Configuration second = new Configuration(template);
+
+    //when
+    first.set("hadoop.security.kerberos.ticket.cache.path", "/tmp/krb5cc_first");
+    first.set("dfs.replication", "1");
+    first.unset("hadoop.security.authentication");
+
+    //then
+    assertThat(first.get("hadoop.security.kerberos.ticket.cache.path"),
+               equalTo("/tmp/krb5cc_first"));
+    assertThat(first.get("dfs.replication"), equalTo("1"));
+    assertThat(first.get("hadoop.security.authentication"), nullValue());
+    assertThat(first.size(), is(3));
+    assertThat(asMap(second), equalTo(PROPERTIES));
+    assertThat(asMap(new Configuration(template)), equalTo(PROPERTIES));
+  }
+
+  @Test
+  public void testTemplate_copyOfModifiedCopy_containsChangesAndBase() throws Exception {
+    //given
+    Configuration first = new Configuration(template);
+    first.set("dfs.replication", "1");
+
+    //when
+    Configuration second = new Configuration(first);
+    second.set("fs.defaultFS", "hdfs://other");
+
+    //then
+    assertThat(second.get("dfs.replication"), equalTo("1"));
+    assertThat(second.get("fs.defaultFS"), equalTo("hdfs://other"));
+    assertThat(second.get("hadoop.security.authentication"), equalTo("kerberos"));
+    assertThat(first.get("fs.defaultFS"), equalTo("hdfs://nameservice1"));
+  }
+
+  @Test
+  public void testTemplate_resourceAddedToCopy_copyReloadedWithBaseAndChanges() throws Exception {
+    //given
+    Configuration copy = new Configuration(template);
+    copy.set("dfs.replication", "1");
+    String xml = "<configuration><property><name>yarn.resourcemanager.hostname</name>"
+                 + "<value>rm</value></property></configuration>";
+
+    //when
+    copy.addResource(new ByteArrayInputStream(xml.getBytes(StandardCharsets.UTF_8)));
+
+    //then
+    assertThat(copy.get("yarn.resourcemanager.hostname"), equalTo("rm"));
+    assertThat(copy.get("dfs.replication"), equalTo("1"));
+    assertThat(copy.get("fs.defaultFS"), equalTo("hdfs://nameservice1"));
+  }
+
+  @Test
+  public void testTemplate_copyWrittenAsXml_containsBaseAndChanges() throws Exception {
+    //given
+    Configuration copy = new Configuration(template);
+    copy.set("dfs.replication", "1");
+    StringWriter xml = new StringWriter();
+
+    //when
+    copy.writeXml(xml);
+
+    //then
+    assertThat(xml.toString(), containsString("<name>fs.defaultFS</name>"));
+    assertThat(xml.toString(), containsString("<value>1</value>"));
+  }
+
+  @Test
+  public void testTemplate_deprecatedKeySet_newKeyReadable() throws Exception {
+    //given
+    Configuration copy =
+        new Configuration(LayeredConfiguration.template(ImmutableMap.of("fs.default.name",
+                                                                        "hdfs://old")));
+
+    //when
+    String value = copy.get("fs.defaultFS");
+
+    //then
+    assertThat(value, equalTo("hdfs://old"));
+  }
+
+  @Test
+  public void testLayeredProperties_computeAndMerge_readThroughAndWriteToOwnLayer()
+      throws Exception {
+    //given
+    Map<Object, Object> base = ImmutableMap.of("a", "1", "b", "2", "c", "3");
+    LayeredProperties props = new LayeredProperties(base);
+
+    //when
+    props.merge("a", "0", (current, value) -> current + "" + value);
+    props.computeIfPresent("b", (key, current) -> null);
+    props.computeIfAbsent("c", key -> "x");
+    props.putIfAbsent("d", "4");
+    props.replace("c", "3", "30");
+
+    //then
+    assertThat(props, equalTo(ImmutableMap.of("a", "10", "c", "30", "d", "4")));
+    assertThat(base, equalTo(ImmutableMap.of("a", "1", "b", "2", "c", "3")));
+  }
+
+  @Test
+  public void testLayeredProperties_replaceAll_appliedToBaseAndOwnEntries() throws Exception {
+    //given
+    LayeredProperties props = new LayeredProperties(ImmutableMap.of("a", "1", "b", "2"));
+    props.put("c", "3");
+    props.remove("b");
+
+    //when
+    props.replaceAll((key, value) -> key + "=" + value);
+
+    //then
+    assertThat(props, equalTo(ImmutableMap.of("a", "a=1", "c", "c=3")));
+    assertThat(props.remove("a", "1"), is(false));
+    assertThat(props.remove("a", "a=1"), is(true));
+    assertThat(props.containsKey("a"), is(false));
+  }
+
+  private static Map<String, String> asMap(Configuration conf) {
+    Map<String, String> map = new HashMap<>();
+    conf.forEach(param -> map.put(param.getKey(), param.getValue()));
+    return map;
+  }
+
+  private static Object getProps(Configuration conf) throws Exception {
+    Method getProps = Configuration.class.getDeclaredMethod("getProps");
+    getProps.setAccessible(true);
+    return getProps.invoke(conf);
+  }
+}
@@ -0,0 +1,129 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client;
+
+import org.apache.commons.io.IOUtils;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.attribute.FileTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Optional;
+import java.util.Set;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsInAnyOrder;
+import static org.hamcrest.Matchers.empty;
+import static org.hamcrest.Matchers.is;
+import static org.junit.Assert.assertThat;
+
+public class ReloadableAppConfigurationTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private String jsonSerializedEnv;
+
+  private Path file;
+
+  private ReloadableAppConfiguration toTest;
+
+  private final List<Set<String>> changes = new ArrayList<>();
+
+  @Before
+  public void setUp() throws Exception {
+    jsonSerializedEnv = IOUtils.toString(getClass().getResourceAsStream("/env_vcap_service.json"));
+    file = folder.newFile("vcap.json").toPath();
+    write(jsonSerializedEnv);
+    toTest = new ReloadableAppConfiguration(file, 0);
+    toTest.addListener(changes::add);
+  }
+
+  @After
+  public void tearDown() {
+    toTest.close();
+  }
+
+  @Test
+  public void testReload_instanceChanged_newConfigurationSwappedInAndListenerNotified()
+      throws Exception {
+    //given
+    ServiceInstanceConfiguration before = toTest.getServiceConfig("hdfs-instance");
+
+    //when
+    write(jsonSerializedEnv.replace("hdfs://localhost/", "hdfs://nameservice1/"));
+    boolean reloaded = toTest.reload();
+
+    //then
+    assertThat(reloaded, is(true));
+    assertThat(changes, contains(containsInAnyOrder("hdfs-instance")));
+    assertThat(toTest.getServiceConfig(ServiceType.HDFS_TYPE).getProperty(Property.HDFS_URI).get()
+                   .startsWith("hdfs://nameservice1/"), is(true));
+    assertThat(before.getProperty(Property.HDFS_URI).get().startsWith("hdfs://localhost/"),
+               is(true));
+  }
+
+  @Test
+  public void testReload_instanceRemovedAndAdded_listenerNotifiedWithBoth() throws Exception {
+    //when
+    write(jsonSerializedEnv.replace("\"yarn-instance\"", "\"yarn-instance2\""));
+    toTest.reload();
+
+    //then
+    assertThat(changes, contains(containsInAnyOrder("yarn-instance", "yarn-instance2")));
+    assertThat(toTest.getServiceConfigIfExists(ServiceType.YARN_TYPE).map(
+        ServiceInstanceConfiguration::getName), is(Optional.of("yarn-instance2")));
+  }
+
+  @Test
+  public void testReload_fileTouchedWithSameContent_nothingChanged() throws Exception {
+    //when
+    Files.setLastModifiedTime(file, FileTime.fromMillis(System.currentTimeMillis() + 10000));
+    boolean reloaded = toTest.reload();
+
+    //then
+    assertThat(reloaded, is(false));
+    assertThat(changes, empty());
+  }
+
+  @Test
+  public void testReload_invalidJson_previousConfigurationStaysInUse() throws Exception {
+    //given
+    write("{\"hdfs\": [");
+
+    //when
+    try {
+      toTest.reload();
+    } catch (IOException expected) {
+    }
+
+    //then
+    assertThat(toTest.getServiceConfig(ServiceType.HDFS_TYPE).getName(), is("hdfs-instance"));
+    assertThat(changes, empty());
+  }
+
+  private void write(String content) throws IOException {
+    Files.write(file, content.getBytes(StandardCharsets.UTF_8));
+  }
+}
@@ -16,7 +16,11 @@
 package org.trustedanalytics.hadoop.config.client;
 
 import static org.hamcrest.CoreMatchers.equalTo;
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.empty;
 import static org.junit.Assert.assertThat;
+import static org.trustedanalytics.hadoop.config.client.ServiceType.HBASE_TYPE;
 import static org.trustedanalytics.hadoop.config.client.ServiceType.HIVE_TYPE;
 
 import java.util.Collections;
@@ -60,4 +64,47 @@ public class SimpleAppConfigurationTest {
   public void getServiceConfigIfExists() {
     assertThat(appConfig.getServiceConfigIfExists(HIVE_TYPE).get(), equalTo(testHiveConfig));
   }
+
+  @Test
+  public void getServiceConfigList_typeNotBound_returnsEmptyList() {
+    assertThat(appConfig.getServiceConfigList(HBASE_TYPE), empty());
+    assertThat(appConfig.getServiceConfigIfExists(HBASE_TYPE).isPresent(), is(false));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void getServiceConfigByName_notBound_throwsIllegalStateException() {
+    appConfig.getServiceConfig("missing");
+  }
+
+  @Test
+  public void builder_manyInstancesOfType_indexedByNameAndType() {
+    //given
+    ServiceInstanceConfiguration src = instance("src");
+    ServiceInstanceConfiguration dst = instance("dst");
+
+    //when
+    AppConfiguration toTest = SimpleAppConfiguration.Builder.newInstance()
+        .withService(HBASE_TYPE, src)
+        .withService(HBASE_TYPE, dst)
+        .withService(HIVE_TYPE, testHiveConfig)
+        .build();
+
+    //then
+    assertThat(toTest.getServiceConfigList(HBASE_TYPE), contains(src, dst));
+    assertThat(toTest.getServiceConfig("dst"), equalTo(dst));
+    assertThat(toTest.getServiceConfig(HIVE_TYPE), equalTo(testHiveConfig));
+  }
+
+  @Test(expected = IllegalStateException.class)
+  public void getServiceConfigByType_manyInstancesOfType_throwsIllegalStateException() {
+    SimpleAppConfiguration.Builder.newInstance()
+        .withService(HBASE_TYPE, instance("src"))
+        .withService(HBASE_TYPE, instance("dst"))
+        .build()
+        .getServiceConfig(HBASE_TYPE);
+  }
+
+  private static ServiceInstanceConfiguration instance(String name) {
+    return new SimpleInstanceConfiguration(name, null, Collections.emptyMap());
+  }
 }
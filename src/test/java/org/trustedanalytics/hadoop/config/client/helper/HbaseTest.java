@@ -16,20 +16,26 @@
 package org.trustedanalytics.hadoop.config.client.helper;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
 import static org.mockito.Matchers.any;
 
 import java.io.IOException;
 import java.io.InputStream;
 
+import javax.security.auth.Subject;
+
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.hbase.HBaseConfiguration;
 import org.apache.hadoop.hbase.client.ConnectionFactory;
 import org.apache.hadoop.hbase.security.User;
 import org.apache.hadoop.hbase.security.UserProvider;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.powermock.api.mockito.PowerMockito;
@@ -39,13 +45,14 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.trustedanalytics.hadoop.config.client.AppConfiguration;
 import org.trustedanalytics.hadoop.config.client.Configurations;
 import org.trustedanalytics.hadoop.config.client.Property;
+import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
 import org.trustedanalytics.hadoop.kerberos.KrbLoginManager;
 
 @RunWith(PowerMockRunner.class)
 @PrepareForTest({ConnectionFactory.class,
-                 HBaseConfiguration.class,
                  UserProvider.class})
-@PowerMockIgnore("javax.security.auth.*")
+// version of hbase is read from package annotation, that classes loaded by PowerMock don't see
+@PowerMockIgnore({"javax.security.auth.*", "org.apache.hadoop.hbase.util.VersionInfo"})
 public class HbaseTest {
 
   private static final String ENV_VCAP_SERVICES_FILE_PATH = "/env_vcap_service.json";
@@ -97,21 +104,64 @@ public class HbaseTest {
                                  .withAppConfiguration(appConfiguration)
                                  .withServiceName("hbase-instance1")
                                  .withLoginManager(loginManager));
-    Configuration hadoopConf  = helper.createConfig();
 
     PowerMockito.mockStatic(ConnectionFactory.class);
-    PowerMockito.mockStatic(HBaseConfiguration.class);
     PowerMockito.mockStatic(UserProvider.class);
-    Mockito.when(HBaseConfiguration.create(any())).thenReturn(hadoopConf);
-    Mockito.when(UserProvider.instantiate(hadoopConf)).thenReturn(userProvided);
+    Mockito.when(UserProvider.instantiate(any())).thenReturn(userProvided);
     Mockito.when(userProvided.create(any())).thenReturn(user);
 
     //when
     helper.createConnection();
 
     //then
+    ArgumentCaptor<Configuration> hbaseConf = ArgumentCaptor.forClass(Configuration.class);
     PowerMockito.verifyStatic(Mockito.times(1));
-    ConnectionFactory.createConnection(hadoopConf, user);
+    ConnectionFactory.createConnection(hbaseConf.capture(), Mockito.eq(user));
+    assertEquals(helper.createConfig().get("hbase.zookeeper.quorum"),
+                 hbaseConf.getValue().get("hbase.zookeeper.quorum"));
+    assertNotNull(hbaseConf.getValue().get("hbase.client.retries.number"));
+  }
+
+  @Test
+  public void testCreateHbaseConfig_calledTwice_hbaseDefaultsSharedServicePropertiesNot()
+      throws Exception {
+    //given
+    Configuration first = new Configuration(false);
+    first.set("hbase.zookeeper.quorum", "first");
+    Configuration second = new Configuration(false);
+    second.set("hbase.zookeeper.quorum", "second");
+
+    //when
+    Configuration actualFirst = Hbase.createHbaseConfig(first);
+    Configuration actualSecond = Hbase.createHbaseConfig(second);
+    actualFirst.set("hbase.client.retries.number", "1");
+
+    //then
+    assertEquals("first", actualFirst.get("hbase.zookeeper.quorum"));
+    assertEquals("second", actualSecond.get("hbase.zookeeper.quorum"));
+    assertEquals(HBaseConfiguration.create().get("hbase.client.retries.number"),
+                 actualSecond.get("hbase.client.retries.number"));
+  }
+
+  @Test
+  public void testCreateHbaseConfig_defaultResourceAddedBetweenCalls_resourceAppliedToNextConfig()
+      throws Exception {
+    //given
+    Configuration service = new Configuration(false);
+    service.set("hbase.zookeeper.quorum", "service");
+    Configuration actualFirst = Hbase.createHbaseConfig(service);
+
+    //when
+    Configuration.addDefaultResource("hbase-test-reload.xml");
+    Configuration actualSecond = Hbase.createHbaseConfig(service);
+
+    //then
+    assertEquals("service", actualSecond.get("hbase.zookeeper.quorum"));
+    assertNotNull(actualSecond.get("hbase.client.retries.number"));
+    assertEquals(actualFirst.get("hbase.client.retries.number"),
+                 actualSecond.get("hbase.client.retries.number"));
+    assertNull(actualFirst.get("hbase.test.reload"));
+    assertEquals("reloaded", actualSecond.get("hbase.test.reload"));
   }
 
   @Test
@@ -134,4 +184,38 @@ public class HbaseTest {
         actual.get("hbase.zookeeper.quorum"));
     assertEquals("6f1bb0fdab0502079c4c4ca6bc770574fe546fc1", hbaseNamespace);
   }
+
+  @Test
+  public void testCreateConnection_impersonation_connectionCreatedForProxyUser() throws Exception {
+    //given
+    Subject serviceSubject = new Subject();
+    Mockito.when(loginManager.loginWithCredentials(any(), any())).thenReturn(serviceSubject);
+    Mockito.when(loginManager.getUGI(serviceSubject))
+        .thenReturn(UserGroupInformation.createRemoteUser("cf"));
+    JwtToken token = Mockito.mock(JwtToken.class);
+    Mockito.when(token.getUserId()).thenReturn("jojo");
+    Hbase helper = Hbase.newInstanceForTests(HadoopClient.Builder.newInstance()
+        .withAppConfiguration(appConfiguration)
+        .withServiceName("hbase-instance2")
+        .withKrbServiceName("kerberos-instance")
+        .withLoginManager(loginManager)
+        .withImpersonation(true));
+
+    PowerMockito.mockStatic(ConnectionFactory.class);
+    PowerMockito.mockStatic(UserProvider.class);
+    Mockito.when(UserProvider.instantiate(any())).thenReturn(userProvided);
+    Mockito.when(userProvided.create(any())).thenReturn(user);
+
+    //when
+    helper.createConnection(token);
+
+    //then
+    ArgumentCaptor<UserGroupInformation> ugi = ArgumentCaptor.forClass(UserGroupInformation.class);
+    Mockito.verify(userProvided).create(ugi.capture());
+    assertEquals("jojo", ugi.getValue().getShortUserName());
+    assertEquals("cf", ugi.getValue().getRealUser().getShortUserName());
+    Mockito.verify(loginManager, Mockito.never()).loginWithJWTtoken(any());
+    PowerMockito.verifyStatic(Mockito.times(1));
+    ConnectionFactory.createConnection(any(Configuration.class), Mockito.eq(user));
+  }
 }
@@ -18,6 +18,7 @@ package org.trustedanalytics.hadoop.config.client.helper;
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
 import org.apache.hadoop.fs.FileSystem;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -29,14 +30,22 @@ import org.powermock.modules.junit4.PowerMockRunner;
 import org.trustedanalytics.hadoop.config.client.AppConfiguration;
 import org.trustedanalytics.hadoop.config.client.Configurations;
 import org.trustedanalytics.hadoop.config.client.ServiceType;
+import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
 import org.trustedanalytics.hadoop.kerberos.KrbLoginManager;
 
 import java.io.IOException;
 import java.io.InputStream;
+import java.net.URI;
+
+import javax.security.auth.Subject;
 
 import static org.junit.Assert.assertEquals;
 import static org.mockito.Matchers.anyObject;
+import static org.mockito.Matchers.any;
 import static org.mockito.Matchers.anyString;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.when;
 import static org.mockito.Mockito.verify;
 
 @RunWith(PowerMockRunner.class)
@@ -94,4 +103,37 @@ public class HdfsTest {
     assertEquals("hdfs/_HOST@US-WEST-2.COMPUTE.INTERNAL",
                  actual.get("dfs.namenode.kerberos.principal"));
   }
-}
\ No newline at end of file
+
+  @Test
+  public void testCreateFileSystem_impersonation_serviceLoggedInOnceAndUsersImpersonated()
+      throws Exception {
+    //given
+    Subject serviceSubject = new Subject();
+    when(loginManager.loginWithCredentials(anyString(), any())).thenReturn(serviceSubject);
+    when(loginManager.getUGI(serviceSubject))
+        .thenReturn(UserGroupInformation.createRemoteUser("cf"));
+    Hdfs helper = Hdfs.newInstanceForTests(HadoopClient.Builder.newInstance()
+                               .withAppConfiguration(appConfiguration)
+                               .withServiceType(ServiceType.HDFS_TYPE)
+                               .withLoginManager(loginManager)
+                               .withImpersonation(true));
+    PowerMockito.mockStatic(FileSystem.class);
+
+    //when
+    helper.createFileSystem(jwtToken("jojo"));
+    helper.createFileSystem(jwtToken("bob"));
+
+    //then
+    verify(loginManager, never()).loginWithJWTtoken(any());
+    verify(loginManager, Mockito.times(1)).loginWithCredentials("cf", "cf1".toCharArray());
+    verify(loginManager, Mockito.times(1)).loginInHadoop(eq(serviceSubject), any());
+    PowerMockito.verifyStatic(Mockito.times(2));
+    FileSystem.newInstance(any(URI.class), any(Configuration.class));
+  }
+
+  private static JwtToken jwtToken(String userId) {
+    JwtToken token = Mockito.mock(JwtToken.class);
+    when(token.getUserId()).thenReturn(userId);
+    return token;
+  }
+}
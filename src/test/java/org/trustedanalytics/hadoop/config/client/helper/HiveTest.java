@@ -16,14 +16,19 @@
 package org.trustedanalytics.hadoop.config.client.helper;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.Mockito.never;
 
 import java.io.IOException;
 import java.io.InputStream;
 import java.sql.Connection;
 import java.sql.DriverManager;
+import java.util.concurrent.atomic.AtomicReference;
+
+import javax.security.auth.Subject;
 
 import org.apache.commons.io.IOUtils;
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
@@ -169,4 +174,58 @@ public class HiveTest {
 
     assertEquals(Hive.getConnection("Hive", config, connectionUrl), connection);
   }
+
+  @Test
+  public void testCreateConnection_impersonation_serviceConnectsOnBehalfOfUser() throws Exception {
+    //given
+    Subject serviceSubject = new Subject();
+    Mockito.when(loginManager.loginWithCredentials(Mockito.any(), Mockito.any()))
+        .thenReturn(serviceSubject);
+    Mockito.when(loginManager.getUGI(serviceSubject))
+        .thenReturn(UserGroupInformation.createRemoteUser("cf"));
+    Mockito.when(token.getUserId()).thenReturn("jojo");
+    Hive helper = Hive.newInstanceForTests(HadoopClient.Builder.newInstance()
+        .withAppConfiguration(appConfiguration).withServiceName("hive-instance2")
+        .withKrbServiceName("kerberos-instance").withLoginManager(loginManager)
+        .withImpersonation(true));
+    String connectionUrl = helper.getConnectionString("") + ";hive.server2.proxy.user=jojo";
+    AtomicReference<String> connectedAs = new AtomicReference<>();
+
+    PowerMockito.mockStatic(DriverManager.class);
+    PowerMockito.when(DriverManager.getConnection(connectionUrl, "jojo", null))
+        .thenAnswer(invocation -> {
+          connectedAs.set(UserGroupInformation.getCurrentUser().getShortUserName());
+          return connection;
+        });
+
+    //when
+    Connection actual = helper.getConnection(token, "");
+
+    //then
+    assertEquals(connection, actual);
+    assertEquals("cf", connectedAs.get());
+    Mockito.verify(loginManager, never()).loginWithJWTtoken(Mockito.any());
+  }
+
+  @Test(expected = IllegalArgumentException.class)
+  public void testWithProxyUser_userWithUrlDelimiters_throwsIllegalArgumentException()
+      throws Exception {
+    //when
+    Hive.withProxyUser("jdbc:hive2://host:10000/db;auth=kerberos",
+                       "jojo;hive.server2.proxy.user=admin");
+
+    //then
+    //exception is thrown
+  }
+
+  @Test
+  public void testWithProxyUser_urlWithHiveConfiguration_sessionVariableAddedBeforeIt()
+      throws Exception {
+    //when
+    String actual = Hive.withProxyUser("jdbc:hive2://host:10000/db;auth=kerberos?a=b#c=d", "jojo");
+
+    //then
+    assertEquals("jdbc:hive2://host:10000/db;auth=kerberos;hive.server2.proxy.user=jojo?a=b#c=d",
+                 actual);
+  }
 }
@@ -0,0 +1,124 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client.helper;
+
+import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.trustedanalytics.hadoop.kerberos.KrbLoginManager;
+
+import javax.security.auth.Subject;
+
+import static org.hamcrest.Matchers.equalTo;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.sameInstance;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class ProxyUsersTest {
+
+  private final KrbLoginManager loginManager = mock(KrbLoginManager.class);
+
+  private final ProxyUsers.ServiceLogin login = mock(ProxyUsers.ServiceLogin.class);
+
+  private final Subject serviceSubject = new Subject();
+
+  private final UserGroupInformation serviceUgi = UserGroupInformation.createRemoteUser("cf");
+
+  private final Configuration hadoopConf = new Configuration(false);
+
+  @Before
+  public void setUp() throws Exception {
+    when(login.login()).thenReturn(serviceSubject);
+    when(loginManager.getUGI(serviceSubject)).thenReturn(serviceUgi);
+    doAnswer(invocation -> {
+      ((Configuration) invocation.getArguments()[1])
+          .set(CommonConfigurationKeys.KERBEROS_TICKET_CACHE_PATH, "/tmp/cf");
+      return null;
+    }).when(loginManager).loginInHadoop(eq(serviceSubject), any());
+  }
+
+  @Test
+  public void testOf_requestedManyTimes_serviceLoggedInOnce() throws Exception {
+    //when
+    ProxyUsers first = ProxyUsers.of(loginManager, "cf", login, hadoopConf);
+    ProxyUsers second = ProxyUsers.of(loginManager, "cf", login, hadoopConf);
+
+    //then
+    Assert.assertThat(second, sameInstance(first));
+    Assert.assertThat(first.getServiceUgi(), sameInstance(serviceUgi));
+    verify(login, times(1)).login();
+    verify(loginManager, times(1)).loginInHadoop(serviceSubject, hadoopConf);
+    verify(loginManager, times(1)).getUGI(any());
+  }
+
+  @Test
+  public void testGet_sameUser_proxyOfServiceUgiReused() throws Exception {
+    //given
+    ProxyUsers toTest = ProxyUsers.of(loginManager, "cf", login, hadoopConf);
+
+    //when
+    UserGroupInformation first = toTest.get("jojo");
+    UserGroupInformation second = toTest.get("jojo");
+
+    //then
+    Assert.assertThat(second, sameInstance(first));
+    Assert.assertThat(first.getShortUserName(), is("jojo"));
+    Assert.assertThat(first.getRealUser(), sameInstance(serviceUgi));
+    Assert.assertThat(toTest.get("bob"), not(sameInstance(first)));
+  }
+
+  @Test
+  public void testOf_otherLoginManager_serviceLoggedInAgain() throws Exception {
+    //given
+    KrbLoginManager otherManager = mock(KrbLoginManager.class);
+    when(otherManager.getUGI(serviceSubject)).thenReturn(serviceUgi);
+
+    //when
+    ProxyUsers first = ProxyUsers.of(loginManager, "cf", login, hadoopConf);
+    ProxyUsers second = ProxyUsers.of(otherManager, "cf", login, hadoopConf);
+
+    //then
+    Assert.assertThat(second, not(sameInstance(first)));
+    verify(login, times(2)).login();
+  }
+
+  @Test
+  public void testSetTicketCache_nextRequest_pointedToServiceTicketCacheWithoutLogin()
+      throws Exception {
+    //given
+    ProxyUsers toTest = ProxyUsers.of(loginManager, "cf", login, hadoopConf);
+    Configuration request = new Configuration(false);
+
+    //when
+    toTest.setTicketCache(request);
+
+    //then
+    Assert.assertThat(request.get(CommonConfigurationKeys.KERBEROS_TICKET_CACHE_PATH),
+                      equalTo("/tmp/cf"));
+    Assert.assertThat(request.get("hadoop.kerberos.kinit.command"), equalTo("kinit -c /tmp/cf"));
+    verify(loginManager, times(1)).loginInHadoop(any(), any());
+  }
+}
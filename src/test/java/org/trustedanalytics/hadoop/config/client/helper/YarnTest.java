@@ -0,0 +1,89 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.config.client.helper;
+
+import org.apache.hadoop.security.UserGroupInformation;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.powermock.api.mockito.PowerMockito;
+import org.powermock.core.classloader.annotations.PowerMockIgnore;
+import org.powermock.core.classloader.annotations.PrepareForTest;
+import org.powermock.modules.junit4.PowerMockRunner;
+import org.trustedanalytics.hadoop.config.client.AppConfiguration;
+import org.trustedanalytics.hadoop.config.client.Configurations;
+import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
+import org.trustedanalytics.hadoop.kerberos.KrbLoginManager;
+
+import javax.security.auth.Subject;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.Matchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(PowerMockRunner.class)
+@PrepareForTest(Yarn.class)
+@PowerMockIgnore("javax.security.auth.*")
+public class YarnTest {
+
+  private static final String KERBEROS_YARN =
+      "{\"yarn\": [{\"name\": \"yarn-instance\", \"credentials\": {\"HADOOP_CONFIG_KEY\": "
+      + "{\"hadoop.security.authentication\": \"kerberos\"}}}], "
+      + "\"kerberos\": [{\"name\": \"kerberos-instance\", \"credentials\": "
+      + "{\"kdc\": \"kdc\", \"krealm\": \"CLOUDERA\", \"kuser\": \"cf\", "
+      + "\"kpassword\": \"cf1\"}}]}";
+
+  @Mock
+  private KrbLoginManager loginManager;
+
+  @Mock
+  private JwtToken token;
+
+  @Mock
+  private UgiWrapper ugiWrapper;
+
+  @Test
+  public void testCreateClient_impersonation_clientActsAsProxyUser() throws Exception {
+    //given
+    AppConfiguration appConfiguration = Configurations.newInstanceFromJson(KERBEROS_YARN);
+    Subject serviceSubject = new Subject();
+    when(loginManager.loginWithCredentials(any(), any())).thenReturn(serviceSubject);
+    when(loginManager.getUGI(serviceSubject))
+        .thenReturn(UserGroupInformation.createRemoteUser("cf"));
+    when(token.getUserId()).thenReturn("jojo");
+    Yarn helper = Yarn.newInstanceForTests(HadoopClient.Builder.newInstance()
+                               .withAppConfiguration(appConfiguration)
+                               .withServiceName("yarn-instance")
+                               .withLoginManager(loginManager)
+                               .withImpersonation(true));
+    PowerMockito.whenNew(UgiWrapper.class).withAnyArguments().thenReturn(ugiWrapper);
+
+    //when
+    helper.createClient(token);
+
+    //then
+    ArgumentCaptor<UserGroupInformation> ugi = ArgumentCaptor.forClass(UserGroupInformation.class);
+    PowerMockito.verifyNew(UgiWrapper.class).withArguments(ugi.capture());
+    assertEquals("jojo", ugi.getValue().getShortUserName());
+    assertEquals("cf", ugi.getValue().getRealUser().getShortUserName());
+    verify(loginManager, never()).loginWithJWTtoken(any());
+    verify(loginManager, Mockito.times(1)).loginInHadoop(any(), any());
+  }
+}
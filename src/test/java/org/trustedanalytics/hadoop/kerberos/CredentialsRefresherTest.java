@@ -0,0 +1,143 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+import java.util.Date;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
+import javax.security.auth.kerberos.KerberosTicket;
+
+import static org.hamcrest.Matchers.allOf;
+import static org.hamcrest.Matchers.greaterThan;
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.lessThanOrEqualTo;
+import static org.mockito.Matchers.any;
+import static org.mockito.Matchers.anyLong;
+import static org.mockito.Mockito.doReturn;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class CredentialsRefresherTest {
+
+  private static final long HOUR = TimeUnit.HOURS.toMillis(1);
+
+  private final ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+
+  private final CredentialsRefresher toTest = new CredentialsRefresher(scheduler, 0.8, 1000);
+
+  @Test
+  public void testDelayOf_freshTicket_refreshAfterWindowOfLifetime() throws Exception {
+    long now = System.currentTimeMillis();
+
+    long actual = toTest.delayOf(tgt(now, now + 10 * HOUR));
+
+    Assert.assertThat(actual, allOf(greaterThan(8 * HOUR - 1000), lessThanOrEqualTo(8 * HOUR)));
+  }
+
+  @Test
+  public void testDelayOf_ticketPastWindow_minimalDelay() throws Exception {
+    long now = System.currentTimeMillis();
+
+    long actual = toTest.delayOf(tgt(now - 9 * HOUR, now + HOUR));
+
+    Assert.assertThat(actual, is(1000L));
+  }
+
+  @Test
+  public void testTrack_noReloginRegistered_nothingScheduled() throws Exception {
+    toTest.track("jojo@REALM", subjectWith(tgt(0, HOUR)));
+
+    verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  public void testTrack_manySubjectsOfRegisteredPrincipal_refreshScheduledOnce() throws Exception {
+    long now = System.currentTimeMillis();
+    doReturn(mock(ScheduledFuture.class))
+        .when(scheduler).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+    toTest.register("jojo@REALM", Subject::new);
+
+    toTest.track("jojo@REALM", subjectWith(tgt(now, now + HOUR)));
+    toTest.track("jojo@REALM", subjectWith(tgt(now, now + HOUR)));
+
+    verify(scheduler, times(1)).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  public void testRefresh_noSubjectsLeft_reloginDroppedAndDiscarded() throws Exception {
+    long now = System.currentTimeMillis();
+    CountingRelogin relogin = new CountingRelogin();
+    toTest.register("jojo@REALM", relogin);
+
+    toTest.refresh("jojo@REALM");
+    toTest.track("jojo@REALM", subjectWith(tgt(now, now + HOUR)));
+
+    Assert.assertThat(relogin.logins, is(0));
+    Assert.assertThat(relogin.discards, is(1));
+    verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
+  @Test
+  public void testRegister_principalRegisteredAgain_replacedReloginDiscarded() throws Exception {
+    CountingRelogin first = new CountingRelogin();
+    CountingRelogin second = new CountingRelogin();
+
+    toTest.register("jojo@REALM", first);
+    toTest.register("jojo@REALM", second);
+
+    Assert.assertThat(first.discards, is(1));
+    Assert.assertThat(second.discards, is(0));
+  }
+
+  private static Subject subjectWith(KerberosTicket tgt) {
+    Subject subject = new Subject();
+    subject.getPrivateCredentials().add(tgt);
+    return subject;
+  }
+
+  private static KerberosTicket tgt(long start, long end) {
+    return new KerberosTicket(new byte[]{1}, new KerberosPrincipal("jojo@REALM"),
+                              new KerberosPrincipal("krbtgt/REALM@REALM"), new byte[]{1}, 1,
+                              null, new Date(start), new Date(start), new Date(end), null, null);
+  }
+
+  private static final class CountingRelogin implements CredentialsRefresher.Relogin {
+
+    private int logins;
+
+    private int discards;
+
+    @Override
+    public Subject login() {
+      logins++;
+      return new Subject();
+    }
+
+    @Override
+    public void discard() {
+      discards++;
+    }
+  }
+}
@@ -18,19 +18,29 @@ package org.trustedanalytics.hadoop.kerberos;
 import org.hamcrest.collection.IsMapContaining;
 import org.junit.Assert;
 import org.junit.Test;
+import org.trustedanalytics.hadoop.config.client.oauth.JwtToken;
 
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
 
 import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosPrincipal;
 import javax.security.auth.login.AppConfigurationEntry;
 import javax.security.auth.login.Configuration;
 import javax.security.auth.login.LoginContext;
 
+import static org.hamcrest.Matchers.is;
+import static org.hamcrest.Matchers.not;
 import static org.junit.Assert.assertThat;
+import static org.mockito.Mockito.any;
+import static org.mockito.Mockito.anyLong;
 import static org.mockito.Mockito.anyObject;
 import static org.mockito.Mockito.anyString;
 import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
 
@@ -86,6 +96,92 @@ public class HadoopKrbLoginManagerTest {
     verify(lc).getSubject();
   }
 
+  @Test
+  public void testLoginWithKeyTab_givenLoginAndKeyTab_loginModuleReadsOnlyTicketCache()
+      throws Exception {
+    HadoopKrbLoginManager.FactoryHelper helper = mock(HadoopKrbLoginManager.FactoryHelper.class);
+    LoginContext lc = mock(LoginContext.class);
+
+    when(helper.getLoginContext(anyString())).thenReturn(lc);
+
+    HadoopKrbLoginManager toTest = new HadoopKrbLoginManager(kdc, realm, helper);
+    toTest.loginWithKeyTab(login, pathToKeyTab);
+
+    Map<String, ?> options = Configuration.getConfiguration()
+        .getAppConfigurationEntry(login)[0].getOptions();
+    verify(helper, times(1)).cacheKrbCredentials(login, pathToKeyTab);
+    assertThat(options, IsMapContaining.hasEntry("doNotPrompt", "true"));
+    assertThat(options, IsMapContaining.hasEntry("useTicketCache", "true"));
+    assertThat(options, not(IsMapContaining.hasKey("useKeyTab")));
+  }
+
+  @Test
+  public void testLoginWithCredentials_givenLoginAndPass_loginModuleReadsOnlyTicketCache()
+      throws Exception {
+    HadoopKrbLoginManager.FactoryHelper helper = mock(HadoopKrbLoginManager.FactoryHelper.class);
+    LoginContext lc = mock(LoginContext.class);
+    char[] pass = "pass".toCharArray();
+
+    when(helper.getLoginContext(anyString(), anyObject())).thenReturn(lc);
+
+    HadoopKrbLoginManager toTest = new HadoopKrbLoginManager(kdc, realm, helper);
+    toTest.loginWithCredentials(login, pass);
+
+    Map<String, ?> options = Configuration.getConfiguration()
+        .getAppConfigurationEntry(login)[0].getOptions();
+    verify(helper, times(1)).cacheKrbCredentials(login, pass);
+    assertThat(options, IsMapContaining.hasEntry("doNotPrompt", "true"));
+    assertThat(options, IsMapContaining.hasEntry("useTicketCache", "true"));
+  }
+
+  @Test
+  public void testLoginWithCredentials_userWithRealm_ticketCacheOfUserAsIs() throws Exception {
+    HadoopKrbLoginManager.FactoryHelper helper = mock(HadoopKrbLoginManager.FactoryHelper.class);
+    LoginContext lc = mock(LoginContext.class);
+    String user = "other@OTHER.REALM";
+
+    when(helper.getLoginContext(anyString(), anyObject())).thenReturn(lc);
+
+    HadoopKrbLoginManager toTest = new HadoopKrbLoginManager(kdc, realm, helper);
+    toTest.loginWithCredentials(user, "pass".toCharArray());
+
+    Map<String, ?> options = Configuration.getConfiguration()
+        .getAppConfigurationEntry(user)[0].getOptions();
+    assertThat(options, IsMapContaining.hasEntry("ticketCache",
+                                                 HadoopKrbLoginManager.ticketCacheLocation(user)));
+  }
+
+  @Test
+  public void testQualifiedPrincipalName_userWithoutRealm_defaultRealmAppended() throws Exception {
+    new HadoopKrbLoginManager(kdc, realm);
+
+    assertThat(HadoopKrbLoginManager.qualifiedPrincipalName(login), is(login + "@" + realm));
+    assertThat(HadoopKrbLoginManager.qualifiedPrincipalName("other@OTHER.REALM"),
+               is("other@OTHER.REALM"));
+  }
+
+  @Test
+  public void testLoginWithJWTtoken_tokenExpiresBeforeTicket_noReloginRegistered()
+      throws Exception {
+    HadoopKrbLoginManager.FactoryHelper helper = mock(HadoopKrbLoginManager.FactoryHelper.class);
+    ScheduledExecutorService scheduler = mock(ScheduledExecutorService.class);
+    CredentialsRefresher refresher = new CredentialsRefresher(scheduler, 0.8, 1000);
+    LoginContext lc = mock(LoginContext.class);
+    JwtToken token = mock(JwtToken.class);
+    Subject subject = new Subject();
+    subject.getPrincipals().add(new KerberosPrincipal("jojo@REALM"));
+
+    when(token.getUserId()).thenReturn("jojo");
+    when(helper.getLoginContext(anyString(), anyObject())).thenReturn(lc);
+    when(lc.getSubject()).thenReturn(subject);
+
+    HadoopKrbLoginManager toTest = new HadoopKrbLoginManager(kdc, realm, helper, refresher);
+    toTest.loginWithJWTtoken(token);
+    refresher.track("jojo@REALM", subject);
+
+    verify(scheduler, never()).schedule(any(Runnable.class), anyLong(), any(TimeUnit.class));
+  }
+
   @Test(expected = IllegalArgumentException.class)
   public void testValidateParams_nullKdc_throwsException() throws Exception {
     HadoopKrbLoginManager.validateParams(null, realm);
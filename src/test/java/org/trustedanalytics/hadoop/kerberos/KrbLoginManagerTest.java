@@ -18,16 +18,24 @@ package org.trustedanalytics.hadoop.kerberos;
 import com.google.common.base.Preconditions;
 
 import org.apache.hadoop.conf.Configuration;
+import org.apache.hadoop.fs.CommonConfigurationKeys;
 import org.apache.hadoop.minikdc.MiniKdc;
+import org.apache.hadoop.security.UserGroupInformation;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
 
 import java.io.File;
+import java.security.AccessController;
+import java.security.PrivilegedAction;
 import java.util.Properties;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 
 import javax.security.auth.Subject;
+import javax.security.auth.kerberos.KerberosTicket;
+import javax.security.auth.login.LoginContext;
 
 public class KrbLoginManagerTest {
 
@@ -99,6 +107,44 @@ public class KrbLoginManagerTest {
                         subject.getPrincipals().iterator().next().getName());
   }
 
+  @Test
+  public void testGetUGI_credentialsRefreshed_newTgtSwappedIntoUgiSubject() throws Exception {
+    ScheduledExecutorService scheduler = Executors.newSingleThreadScheduledExecutor();
+    CredentialsRefresher refresher = new CredentialsRefresher(scheduler, 0.8, 60000);
+    HadoopKrbLoginManager loginManager =
+        new HadoopKrbLoginManager(kdc.getHost() + ":" + kdc.getPort(), kdc.getRealm(),
+                                  new HadoopKrbLoginManager.FactoryHelper(), refresher);
+    Subject subject = loginManager.loginWithKeyTab(ANOTHER_PRINCIPAL_NAME,
+                                                   keyTabForAnotherJojo.getPath());
+    Configuration hadoopConf = new Configuration(false);
+    hadoopConf.set(CommonConfigurationKeys.HADOOP_SECURITY_AUTHENTICATION, "kerberos");
+    UserGroupInformation.setConfiguration(hadoopConf);
+    try {
+      UserGroupInformation ugi = loginManager.getUGI(subject);
+      Subject ugiSubject = ugi.doAs(
+          (PrivilegedAction<Subject>) () -> Subject.getSubject(AccessController.getContext()));
+      KerberosTicket before = CredentialsRefresher.findTgt(ugiSubject).get();
+      // java.security.krb5.kdc can't carry MiniKdc's port once krb5 config is refreshed, so
+      // relogin reads fresh TGT from the ticket cache instead of contacting KDC again
+      String principal = HadoopKrbLoginManager.getPrincipalName(subject);
+      refresher.register(principal, () -> {
+        LoginContext lc = new LoginContext(ANOTHER_PRINCIPAL_NAME);
+        lc.login();
+        return lc.getSubject();
+      });
+
+      refresher.refresh(principal);
+
+      KerberosTicket after = CredentialsRefresher.findTgt(ugiSubject).get();
+      Assert.assertNotSame(before, after);
+      Assert.assertEquals(1, ugiSubject.getPrivateCredentials(KerberosTicket.class).size());
+      Assert.assertEquals(before.getClient(), after.getClient());
+    } finally {
+      UserGroupInformation.setConfiguration(new Configuration(false));
+      scheduler.shutdownNow();
+    }
+  }
+
   private static File createTestDir() {
     return new File("target");
   }
@@ -0,0 +1,159 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.util.concurrent.TimeUnit;
+
+import javax.security.auth.login.LoginException;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.not;
+import static org.hamcrest.Matchers.nullValue;
+import static org.hamcrest.Matchers.sameInstance;
+
+public class KtinitWorkerPoolTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private KtinitWorkerPool toTest;
+
+  @After
+  public void tearDown() {
+    if (toTest != null) {
+      toTest.close();
+    }
+  }
+
+  @Test
+  public void testKtinit_workerSucceeds_createsCCacheAndReusesProcess() throws Exception {
+    //given
+    toTest = new KtinitWorkerPool(workerPath("ktinit_worker"), 1, 5000);
+    File first = new File(folder.getRoot(), "first");
+    File second = new File(folder.getRoot(), "second");
+
+    //when
+    toTest.ktinit("token", "jojo@REALM", first.getAbsolutePath());
+    Process process = toTest.getWorkers().get(0).getProcess();
+    toTest.ktinit("token", "jojo@REALM", second.getAbsolutePath());
+
+    //then
+    Assert.assertTrue(first.exists());
+    Assert.assertTrue(second.exists());
+    Assert.assertThat(toTest.getWorkers().get(0).getProcess(), sameInstance(process));
+  }
+
+  @Test
+  public void testKtinit_workerRespondsWithError_throwsLoginException() throws Exception {
+    //given
+    toTest = new KtinitWorkerPool(workerPath("ktinit_worker"), 1, 5000);
+
+    //when
+    try {
+      toTest.ktinit("token", "fail@REALM", new File(folder.getRoot(), "cc").getAbsolutePath());
+      Assert.fail("LoginException expected");
+    } catch (LoginException expected) {
+      //then
+      Assert.assertThat(expected.getMessage(), containsString("cannot obtain credentials"));
+    }
+  }
+
+  @Test
+  public void testKtinit_workerCrashed_restartsWorkerOnNextRequest() throws Exception {
+    //given
+    toTest = new KtinitWorkerPool(workerPath("ktinit_worker"), 1, 5000);
+    File cache = new File(folder.getRoot(), "cc");
+    try {
+      toTest.ktinit("token", "crash@REALM", cache.getAbsolutePath());
+      Assert.fail("LoginException expected");
+    } catch (LoginException expected) {
+      Assert.assertThat(expected.getMessage(), containsString("exited unexpectedly"));
+    }
+
+    //when
+    toTest.ktinit("token", "jojo@REALM", cache.getAbsolutePath());
+
+    //then
+    Assert.assertTrue(cache.exists());
+  }
+
+  @Test
+  public void testKtinit_workerHangs_throwsLoginExceptionAndKillsWorker() throws Exception {
+    //given
+    toTest = new KtinitWorkerPool(workerPath("ktinit_worker_that_hangs"), 1, 500);
+
+    //when
+    try {
+      toTest.ktinit("token", "jojo@REALM", new File(folder.getRoot(), "cc").getAbsolutePath());
+      Assert.fail("LoginException expected");
+    } catch (LoginException expected) {
+      //then
+      Assert.assertThat(expected.getMessage(), containsString("did not respond"));
+      Assert.assertThat(toTest.getWorkers().get(0).getProcess(), nullValue());
+    }
+  }
+
+  @Test
+  public void testKtinit_ccachePathWithSpace_throwsLoginExceptionWithoutCallingWorker()
+      throws Exception {
+    //given
+    toTest = new KtinitWorkerPool(workerPath("ktinit_worker"), 1, 5000);
+    File cache = new File(folder.getRoot(), "user cc");
+
+    //when
+    try {
+      toTest.ktinit("token", "jojo@REALM", cache.getAbsolutePath());
+      Assert.fail("LoginException expected");
+    } catch (LoginException expected) {
+      //then
+      Assert.assertThat(expected.getMessage(), containsString("whitespace"));
+      Assert.assertThat(toTest.getWorkers().get(0).getProcess(), nullValue());
+      Assert.assertFalse(cache.exists());
+    }
+  }
+
+  @Test
+  public void testCloseAll_sharedPoolUsed_stopsWorkers() throws Exception {
+    //given
+    KtinitWorkerPool shared = KtinitWorkerPool.forCommand(workerPath("ktinit_worker"));
+    shared.ktinit("token", "jojo@REALM", new File(folder.getRoot(), "cc").getAbsolutePath());
+    Process process = shared.getWorkers().get(0).getProcess();
+
+    //when
+    KtinitWorkerPool.closeAll();
+
+    //then
+    Assert.assertThat(shared.getWorkers().get(0).getProcess(), nullValue());
+    Assert.assertTrue(process.waitFor(5, TimeUnit.SECONDS));
+    Assert.assertThat(KtinitWorkerPool.forCommand(workerPath("ktinit_worker")),
+                      not(sameInstance(shared)));
+    KtinitWorkerPool.closeAll();
+  }
+
+  private String workerPath(String scriptName) {
+    String worker = KtinitWorkerPoolTest.class
+        .getClassLoader().getResource("krb5jwt/bin/" + scriptName).getPath();
+    new File(worker).setExecutable(true);
+    return worker;
+  }
+}
@@ -50,7 +50,8 @@ public class Oauth2KrbLoginModuleTest {
              Oauth2KrbLoginModuleTest.class.getClassLoader().getResource("oauth.token").getPath()
          ).get());
     System.setProperty(HadoopKrbLoginManager.KRB5_REALM, DEAFULT_REALM);
-    this.expectedKrbCacheLocation = String.format("/tmp/%s@%s", token.getUserId(), DEAFULT_REALM);
+    this.expectedKrbCacheLocation = HadoopKrbLoginManager.ticketCacheLocation(
+        String.format("%s@%s", token.getUserId(), DEAFULT_REALM));
     this.anotherExpectedKrbCacheLocation = "/tmp/jojo";
   }
 
@@ -112,6 +113,25 @@ public class Oauth2KrbLoginModuleTest {
     Assert.assertTrue(Files.exists(Paths.get(this.anotherExpectedKrbCacheLocation)));
   }
 
+  @Test
+  public void testPrepareKrbCCache_ktinitWorkerSuccess_createCCacheFile() throws Exception {
+    //given
+    Oauth2KrbLoginModule toTest = new Oauth2KrbLoginModule();
+    Map<String, String> options = Maps.newHashMap();
+    options.put(Oauth2KrbLoginModule.ConfigOptions.KTINIT_COMMAND.getName(),
+                ktinitPath("ktinit_that_fails"));
+    options.put(Oauth2KrbLoginModule.ConfigOptions.KTINIT_WORKER_COMMAND.getName(),
+                ktinitPath("ktinit_worker"));
+    options.put(Oauth2KrbLoginModule.ConfigOptions.USE_TOKEN.getName(), "true");
+    toTest.initialize(null, new Oauth2KrbCallbackHandler(this.token::getRawToken), null, options);
+
+    //when
+    toTest.prepareKrbCCache(token);
+
+    //then
+    Assert.assertTrue(Files.exists(Paths.get(this.expectedKrbCacheLocation)));
+  }
+
   @Test(expected = IllegalStateException.class)
   public void testInitialize_ktinitFails_throwsIllegalStateException() throws Exception {
     //given
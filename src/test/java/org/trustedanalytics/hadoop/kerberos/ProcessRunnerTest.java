@@ -0,0 +1,138 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.OptionalLong;
+
+import static org.hamcrest.Matchers.contains;
+import static org.hamcrest.Matchers.containsString;
+import static org.hamcrest.Matchers.is;
+
+public class ProcessRunnerTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private final ProcessRunner toTest = new ProcessRunner(5000);
+
+  @Test
+  public void testRun_commandSucceeds_returnsExitCodeAndOutput() throws Exception {
+    //given
+    long exitsBefore = exitsWithCode(3);
+
+    //when
+    ProcessRunner.Result result = toTest.run("bash", "-c", "echo out; echo err >&2; exit 3");
+
+    //then
+    Assert.assertThat(result.getExitCode(), is(3));
+    Assert.assertThat(result.getStdout(), contains("out"));
+    Assert.assertThat(result.getStderr(), contains("err"));
+    Assert.assertThat(exitsWithCode(3), is(exitsBefore + 1));
+  }
+
+  @Test
+  public void testRun_commandFillsPipeBuffers_doesNotBlock() throws Exception {
+    //when
+    ProcessRunner.Result result =
+        toTest.run("bash", "-c", "seq 1 100000; seq 1 100000 >&2");
+
+    //then
+    Assert.assertThat(result.getExitCode(), is(0));
+    Assert.assertThat(result.getStdout().size(), is(100000));
+    Assert.assertThat(result.getStderr().size(), is(100000));
+  }
+
+  @Test
+  public void testRun_commandExceedsTimeout_killsProcessTreeAndThrowsIOException()
+      throws Exception {
+    //given
+    Assume.assumeTrue(Files.isDirectory(Paths.get("/proc/self")));
+    Path childPid = folder.getRoot().toPath().resolve("child.pid");
+    long timeoutsBefore = ProcessRunner.metrics().getTimeouts();
+
+    //when
+    try {
+      new ProcessRunner(500).run("bash", "-c", "sleep 30 & echo $! > " + childPid + "; wait");
+      Assert.fail("IOException expected");
+    } catch (IOException expected) {
+      //then
+      Assert.assertThat(expected.getMessage(), containsString("did not finish"));
+    }
+    Assert.assertThat(ProcessRunner.metrics().getTimeouts(), is(timeoutsBefore + 1));
+    Assert.assertTrue(waitUntilDead(Files.readAllLines(childPid).get(0).trim()));
+  }
+
+  @Test(expected = IOException.class)
+  public void testRun_commandDoesNotExist_throwsIOException() throws Exception {
+    toTest.run("/non/existing/command");
+  }
+
+  @Test
+  public void testPidOf_runningProcess_returnsPidReportedByProcess() throws Exception {
+    //given
+    Process process = new ProcessBuilder("bash", "-c", "echo $$; sleep 30").start();
+    try (BufferedReader out = new BufferedReader(
+        new InputStreamReader(process.getInputStream(), StandardCharsets.UTF_8))) {
+      long reported = Long.parseLong(out.readLine().trim());
+
+      //when
+      OptionalLong actual = ProcessRunner.pidOf(process);
+
+      //then
+      Assert.assertThat(actual, is(OptionalLong.of(reported)));
+    } finally {
+      process.destroyForcibly();
+    }
+  }
+
+  private static long exitsWithCode(int code) {
+    return ProcessRunner.metrics().getExits().getOrDefault(code, 0L);
+  }
+
+  private static boolean waitUntilDead(String pid) throws Exception {
+    Path status = Paths.get("/proc", pid, "status");
+    for (int i = 0; i < 50; i++) {
+      if (!Files.exists(status) || isZombie(status)) {
+        return true;
+      }
+      Thread.sleep(100);
+    }
+    return false;
+  }
+
+  private static boolean isZombie(Path status) {
+    try {
+      List<String> lines = Files.readAllLines(status);
+      return lines.stream().anyMatch(line -> line.startsWith("State:") && line.contains("Z"));
+    } catch (IOException processGone) {
+      return true;
+    }
+  }
+}
@@ -0,0 +1,126 @@
+/**
+ * Copyright (c) 2016 Intel Corporation
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *    http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.trustedanalytics.hadoop.kerberos;
+
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.attribute.FileTime;
+import java.util.stream.Stream;
+
+import static org.hamcrest.Matchers.is;
+
+public class TicketCacheStoreTest {
+
+  @Rule
+  public TemporaryFolder folder = new TemporaryFolder();
+
+  private TicketCacheStore toTest;
+
+  @Before
+  public void setUp() throws Exception {
+    toTest = new TicketCacheStore(folder.getRoot().toPath(), 60);
+  }
+
+  @Test
+  public void testLocation_principalWithInstance_returnsPathInShardDirectory() throws Exception {
+    //when
+    Path actual = Paths.get(toTest.location("jojo/sys@REALM"));
+
+    //then
+    Assert.assertThat(actual.getFileName().toString(), is("jojo_sys@REALM"));
+    Assert.assertThat(actual.getParent().getParent(), is(toTest.getBaseDir()));
+    Assert.assertThat(actual.getParent().getFileName().toString(),
+                      is(TicketCacheStore.shardOf("jojo_sys@REALM")));
+    Assert.assertTrue(Files.isDirectory(actual.getParent()));
+  }
+
+  @Test
+  public void testLocation_samePrincipal_returnsSameLocation() throws Exception {
+    Assert.assertThat(toTest.location("jojo@REALM"), is(toTest.location("jojo@REALM")));
+  }
+
+  @Test
+  public void testUpdate_writerCreatesCache_replacesTargetAndLeavesNoTempFiles() throws Exception {
+    //given
+    String location = toTest.location("jojo@REALM");
+    Files.write(Paths.get(location), "old".getBytes());
+
+    //when
+    toTest.update(location, temp -> Files.write(Paths.get(temp), "new".getBytes()));
+
+    //then
+    Assert.assertThat(new String(Files.readAllBytes(Paths.get(location))), is("new"));
+    try (Stream<Path> files = Files.list(Paths.get(location).getParent())) {
+      Assert.assertThat(files.count(), is(1L));
+    }
+  }
+
+  @Test
+  public void testUpdate_writerDoesNotCreateCache_throwsIOExceptionAndKeepsOldCache()
+      throws Exception {
+    //given
+    String location = toTest.location("jojo@REALM");
+    Files.write(Paths.get(location), "old".getBytes());
+
+    //when
+    try {
+      toTest.update(location, temp -> { });
+      Assert.fail("IOException expected");
+    } catch (IOException expected) {
+      //then
+      Assert.assertThat(new String(Files.readAllBytes(Paths.get(location))), is("old"));
+    }
+  }
+
+  @Test
+  public void testCleanup_expiredCacheAndStaleTempFile_removesBoth() throws Exception {
+    //given
+    Path expired = Paths.get(toTest.location("expired@REALM"));
+    Path valid = Paths.get(toTest.location("valid@REALM"));
+    Path staleTemp = TicketCacheStore.tempFor(valid);
+    Files.write(expired, new byte[0]);
+    Files.write(valid, new byte[0]);
+    Files.write(staleTemp, new byte[0]);
+    Files.setLastModifiedTime(staleTemp, FileTime.fromMillis(0));
+
+    //when
+    int removed = toTest.cleanup(expired::equals);
+
+    //then
+    Assert.assertThat(removed, is(2));
+    Assert.assertFalse(Files.exists(expired));
+    Assert.assertFalse(Files.exists(staleTemp));
+    Assert.assertTrue(Files.exists(valid));
+  }
+
+  @Test
+  public void testIsExpired_notACredentialsCache_returnsFalse() throws Exception {
+    //given
+    Path notACache = Paths.get(toTest.location("jojo@REALM"));
+    Files.write(notACache, "garbage".getBytes());
+
+    //then
+    Assert.assertFalse(TicketCacheStore.isExpired(notACache));
+  }
+}